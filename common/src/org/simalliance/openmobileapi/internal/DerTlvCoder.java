@@ -53,46 +53,10 @@ public final class DerTlvCoder {
      */
     public static byte[] encodeLength(int lengthValue)
             throws IllegalArgumentException {
-        if (lengthValue < 0) {
-            throw new IllegalArgumentException(
-                    ErrorStrings.paramInvalidValue("lengthValue"));
-        }
-        // Get the byte array representing the length
-        byte[] rawLength = ByteArrayConverter.intToByteArray(lengthValue);
-
-        byte[] encodedLength;
-        if (lengthValue <= 0x7F) {
-            // Use short form: bit 8 set to 0
-            encodedLength = new byte[1];
-            encodedLength[0] = (byte) (0x7F & rawLength[3]);
-        } else if (lengthValue <= 0x0FF) {
-            // Use long form (2 bytes)
-            encodedLength = new byte[2];
-            encodedLength[0] = (byte) 0x81;
-            encodedLength[1] = rawLength[3];
-        } else if (lengthValue <= 0xFFFF) {
-            // Use long form (3 bytes)
-            encodedLength = new byte[3];
-            encodedLength[0] = (byte) 0x82;
-            encodedLength[1] = rawLength[2];
-            encodedLength[2] = rawLength[3];
-        } else if (lengthValue <= 0xFFFFFF) {
-            // Use long form (4 bytes)
-            encodedLength = new byte[4];
-            encodedLength[0] = (byte) 0x83;
-            encodedLength[1] = rawLength[1];
-            encodedLength[2] = rawLength[2];
-            encodedLength[3] = rawLength[3];
-        } else {
-            // Use long form (5 bytes)
-            encodedLength = new byte[5];
-            encodedLength[0] = (byte) 0x84;
-            encodedLength[1] = rawLength[0];
-            encodedLength[2] = rawLength[1];
-            encodedLength[3] = rawLength[2];
-            encodedLength[4] = rawLength[3];
-        }
-
+        int lengthFieldLength = DerTlvWriter.getLengthFieldLength(lengthValue);
+        byte[] encodedLength = new byte[lengthFieldLength];
+        DerTlvWriter.putLength(encodedLength, 0, lengthValue,
+                lengthFieldLength);
         return encodedLength;
     }
 
@@ -104,29 +68,15 @@ public final class DerTlvCoder {
      * @return A byte array representing the integer in DER format.
      */
     public static byte[] encodeInteger(int value) {
-        byte[] valueByteArray = ByteArrayConverter.intToByteArray(value);
-
-        // Delete leading bytes that are equal to 0 to
+        // Leading bytes that are equal to 0 are omitted to
         // ensure that the minimum number of bytes is used
-        while (valueByteArray[0] == 0x00) {
-            byte[] tmp = new byte[valueByteArray.length - 1];
-            System.arraycopy(valueByteArray, 1, tmp, 0, tmp.length);
-            valueByteArray = new byte[tmp.length];
-            System.arraycopy(tmp, 0, valueByteArray, 0, tmp.length);
-        }
-
-        byte[] lengthByteArray = encodeLength(valueByteArray.length);
-
-        byte[] encodedInteger = new byte[TAG_INTEGER.length
-                + lengthByteArray.length + valueByteArray.length];
-
+        int length = DerTlvWriter.getIntegerLength(value);
+        byte[] encodedInteger = new byte[TAG_INTEGER.length + 1 + length];
         System.arraycopy(TAG_INTEGER, 0, encodedInteger, 0,
                 TAG_INTEGER.length);
-        System.arraycopy(lengthByteArray, 0, encodedInteger,
-                TAG_INTEGER.length, lengthByteArray.length);
-        System.arraycopy(valueByteArray, 0, encodedInteger,
-                TAG_INTEGER.length + lengthByteArray.length,
-                valueByteArray.length);
+        encodedInteger[TAG_INTEGER.length] = (byte) length;
+        DerTlvWriter.putInteger(encodedInteger, TAG_INTEGER.length + 1, value,
+                length);
 
         return encodedInteger;
     }
@@ -139,20 +89,7 @@ public final class DerTlvCoder {
      * @return A byte array representing the octet string in DER format.
      */
     public static byte[] encodeOctetString(byte[] octetString) {
-        byte[] lengthByteArray = encodeLength(octetString.length);
-
-        byte[] encodedOctetString = new byte[TAG_OCTET_STRING.length
-                + lengthByteArray.length + octetString.length];
-
-        System.arraycopy(TAG_OCTET_STRING, 0, encodedOctetString, 0,
-                TAG_OCTET_STRING.length);
-        System.arraycopy(lengthByteArray, 0, encodedOctetString,
-                TAG_OCTET_STRING.length, lengthByteArray.length);
-        System.arraycopy(octetString, 0, encodedOctetString,
-                TAG_OCTET_STRING.length + lengthByteArray.length,
-                octetString.length);
-
-        return encodedOctetString;
+        return encode(TAG_OCTET_STRING, octetString);
     }
 
     /**
@@ -163,18 +100,27 @@ public final class DerTlvCoder {
      * @return A byte array representing the sequence in DER format.
      */
     public static byte[] encodeSequence(byte[] sequence) {
-        byte[] lengthByteArray = encodeLength(sequence.length);
-
-        byte[] encodedSequence = new byte[TAG_SEQUENCE.length
-                + lengthByteArray.length + sequence.length];
-
-        System.arraycopy(TAG_SEQUENCE, 0, encodedSequence, 0,
-                TAG_SEQUENCE.length);
-        System.arraycopy(lengthByteArray, 0, encodedSequence,
-                TAG_SEQUENCE.length, lengthByteArray.length);
-        System.arraycopy(sequence, 0, encodedSequence, TAG_SEQUENCE.length
-                + lengthByteArray.length, sequence.length);
+        return encode(TAG_SEQUENCE, sequence);
+    }
 
-        return encodedSequence;
+    /**
+     * Encodes an object with the specified tag into an array of the exact
+     * size.
+     *
+     * @param tag The tag of the object.
+     * @param value The value of the object.
+     *
+     * @return A byte array representing the object in DER format.
+     */
+    private static byte[] encode(byte[] tag, byte[] value) {
+        int lengthFieldLength = DerTlvWriter.getLengthFieldLength(value.length);
+        byte[] encoded = new byte[tag.length + lengthFieldLength
+                + value.length];
+        System.arraycopy(tag, 0, encoded, 0, tag.length);
+        DerTlvWriter.putLength(encoded, tag.length, value.length,
+                lengthFieldLength);
+        System.arraycopy(value, 0, encoded, tag.length + lengthFieldLength,
+                value.length);
+        return encoded;
     }
 }
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.internal;
+
+/**
+ * Writer that encodes DER objects into a growable buffer.
+ * <p>
+ * Constructed objects are opened with {@link #startConstructed(byte[])} and
+ * closed with {@link #end()}. Their length field is patched when the object
+ * is closed, so nested objects are written in place instead of being copied
+ * once per nesting level. The buffer can be reused with {@link #reset()}.
+ */
+public final class DerTlvWriter {
+
+    /**
+     * Default initial capacity of the buffer.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private byte[] mBuffer;
+
+    private int mSize;
+
+    /**
+     * Positions of the length fields of the open constructed objects.
+     */
+    private int[] mOpen = new int[4];
+
+    private int mDepth;
+
+    /**
+     * Initializes a new writer with the default capacity.
+     */
+    public DerTlvWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Initializes a new writer.
+     *
+     * @param capacity The initial capacity of the buffer.
+     *
+     * @throws IllegalArgumentException if the capacity is less than 0.
+     */
+    public DerTlvWriter(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    ErrorStrings.paramInvalidValue("capacity"));
+        }
+        mBuffer = new byte[capacity];
+    }
+
+    /**
+     * Discards the written data. The buffer is kept for the next objects.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter reset() {
+        mSize = 0;
+        mDepth = 0;
+        return this;
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param value The byte to be written.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter write(byte value) {
+        ensureCapacity(1);
+        mBuffer[mSize++] = value;
+        return this;
+    }
+
+    /**
+     * Writes the specified bytes.
+     *
+     * @param data The bytes to be written.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter write(byte[] data) {
+        return write(data, 0, data.length);
+    }
+
+    /**
+     * Writes a part of the specified array.
+     *
+     * @param data The array that contains the bytes to be written.
+     * @param offset The position of the first byte.
+     * @param length The number of bytes.
+     *
+     * @return This writer.
+     *
+     * @throws IllegalArgumentException if offset or length are out of range.
+     */
+    public DerTlvWriter write(byte[] data, int offset, int length)
+            throws IllegalArgumentException {
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IllegalArgumentException(
+                    ErrorStrings.paramInvalidValue("offset"));
+        }
+        ensureCapacity(length);
+        System.arraycopy(data, offset, mBuffer, mSize, length);
+        mSize += length;
+        return this;
+    }
+
+    /**
+     * Writes a DER length field.
+     *
+     * @param length The length to be encoded.
+     *
+     * @return This writer.
+     *
+     * @throws IllegalArgumentException if the length is less than 0.
+     */
+    public DerTlvWriter writeLength(int length)
+            throws IllegalArgumentException {
+        int lengthFieldLength = getLengthFieldLength(length);
+        ensureCapacity(lengthFieldLength);
+        putLength(mBuffer, mSize, length, lengthFieldLength);
+        mSize += lengthFieldLength;
+        return this;
+    }
+
+    /**
+     * Writes a primitive object.
+     *
+     * @param tag The tag of the object.
+     * @param value The array that contains the value.
+     * @param offset The position of the value.
+     * @param length The length of the value.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter writeTlv(byte[] tag, byte[] value, int offset,
+            int length) {
+        write(tag);
+        writeLength(length);
+        return write(value, offset, length);
+    }
+
+    /**
+     * Writes an object of type "INTEGER". As in
+     * {@link DerTlvCoder#encodeInteger(int)}, leading bytes equal to 0 are
+     * omitted.
+     *
+     * @param value The value of the integer.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter writeInteger(int value) {
+        int length = getIntegerLength(value);
+        ensureCapacity(DerTlvCoder.TAG_INTEGER.length + 1 + length);
+        write(DerTlvCoder.TAG_INTEGER);
+        mBuffer[mSize++] = (byte) length;
+        putInteger(mBuffer, mSize, value, length);
+        mSize += length;
+        return this;
+    }
+
+    /**
+     * Writes an object of type "OCTET STRING".
+     *
+     * @param value The array that contains the octet string.
+     * @param offset The position of the octet string.
+     * @param length The length of the octet string.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter writeOctetString(byte[] value, int offset,
+            int length) {
+        return writeTlv(DerTlvCoder.TAG_OCTET_STRING, value, offset, length);
+    }
+
+    /**
+     * Opens a constructed object. Its length is written by {@link #end()}.
+     *
+     * @param tag The tag of the object.
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter startConstructed(byte[] tag) {
+        write(tag);
+        if (mDepth == mOpen.length) {
+            int[] open = new int[mOpen.length * 2];
+            System.arraycopy(mOpen, 0, open, 0, mDepth);
+            mOpen = open;
+        }
+        mOpen[mDepth++] = mSize;
+        // Reserve the short form, longer length fields are made room for
+        // when the object is closed.
+        return write((byte) 0x00);
+    }
+
+    /**
+     * Opens an object of type "SEQUENCE".
+     *
+     * @return This writer.
+     */
+    public DerTlvWriter startSequence() {
+        return startConstructed(DerTlvCoder.TAG_SEQUENCE);
+    }
+
+    /**
+     * Closes the innermost open constructed object and writes its length.
+     *
+     * @return This writer.
+     *
+     * @throws IllegalStateException if no constructed object is open.
+     */
+    public DerTlvWriter end() throws IllegalStateException {
+        if (mDepth == 0) {
+            throw new IllegalStateException("No constructed object is open.");
+        }
+        int position = mOpen[--mDepth];
+        int length = mSize - position - 1;
+        int lengthFieldLength = getLengthFieldLength(length);
+        if (lengthFieldLength > 1) {
+            int extra = lengthFieldLength - 1;
+            ensureCapacity(extra);
+            System.arraycopy(mBuffer, position + 1, mBuffer,
+                    position + lengthFieldLength, length);
+            mSize += extra;
+        }
+        putLength(mBuffer, position, length, lengthFieldLength);
+        return this;
+    }
+
+    /**
+     * Returns the buffer the objects are written to. Only the first
+     * {@link #size()} bytes are valid. The buffer is reused after
+     * {@link #reset()} and may be replaced when the writer grows.
+     *
+     * @return The buffer of this writer.
+     */
+    public byte[] getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * @return The number of bytes written.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns a copy of the written bytes.
+     *
+     * @return The encoded objects.
+     *
+     * @throws IllegalStateException if a constructed object is still open.
+     */
+    public byte[] toByteArray() throws IllegalStateException {
+        if (mDepth != 0) {
+            throw new IllegalStateException(
+                    "Constructed object is still open.");
+        }
+        byte[] data = new byte[mSize];
+        System.arraycopy(mBuffer, 0, data, 0, mSize);
+        return data;
+    }
+
+    private void ensureCapacity(int length) {
+        if (mSize + length > mBuffer.length) {
+            byte[] buffer = new byte[Math.max(mBuffer.length * 2,
+                    mSize + length)];
+            System.arraycopy(mBuffer, 0, buffer, 0, mSize);
+            mBuffer = buffer;
+        }
+    }
+
+    /**
+     * Returns the length of the DER length field for the specified length.
+     *
+     * @throws IllegalArgumentException if the length is less than 0.
+     */
+    static int getLengthFieldLength(int length)
+            throws IllegalArgumentException {
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    ErrorStrings.paramInvalidValue("lengthValue"));
+        }
+        if (length <= 0x7F) {
+            return 1;
+        } else if (length <= 0xFF) {
+            return 2;
+        } else if (length <= 0xFFFF) {
+            return 3;
+        } else if (length <= 0xFFFFFF) {
+            return 4;
+        } else {
+            return 5;
+        }
+    }
+
+    /**
+     * Writes a DER length field of the specified size into an array.
+     */
+    static void putLength(byte[] array, int position, int length,
+            int lengthFieldLength) {
+        if (lengthFieldLength == 1) {
+            // Use short form: bit 8 set to 0
+            array[position] = (byte) length;
+            return;
+        }
+        // Use long form
+        array[position] = (byte) (0x80 | (lengthFieldLength - 1));
+        for (int i = lengthFieldLength - 1; i > 0; i--) {
+            array[position + i] = (byte) length;
+            length >>>= 8;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of an INTEGER value without leading bytes
+     * equal to 0.
+     */
+    static int getIntegerLength(int value) {
+        int length = 4;
+        while (length > 1 && (value >>> (8 * (length - 1))) == 0) {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Writes the last bytes of an INTEGER value into an array.
+     */
+    static void putInteger(byte[] array, int position, int value,
+            int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            array[position + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
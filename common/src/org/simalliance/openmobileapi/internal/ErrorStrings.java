@@ -175,6 +175,11 @@ public final class ErrorStrings {
      */
     public static final String TLV_INVALID_LENGTH = "Invalid length field.";
 
+    /**
+     * Not enough data.
+     */
+    public static final String TLV_NOT_ENOUGH_DATA = "Not enough data.";
+
     // Other messages
 
     /**
@@ -0,0 +1,378 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.internal;
+
+/**
+ * Cursor over the TLV objects of a byte array.
+ * <p>
+ * The cursor does not copy any data: the tag is returned as an integer and
+ * the value as offset and length in the underlying array. A cursor can be
+ * reused for other data with {@link #reset(byte[], int, int)}.
+ */
+public final class TlvCursor {
+
+    /**
+     * true if DER coding rules apply, false for BER-TLV.
+     */
+    private final boolean mDer;
+
+    private byte[] mData;
+
+    /**
+     * Position of the next TLV object.
+     */
+    private int mPosition;
+
+    /**
+     * End of the data to be parsed.
+     */
+    private int mEnd;
+
+    private int mEntryOffset;
+    private int mTagLength;
+    private int mValueOffset;
+    private int mValueLength;
+
+    /**
+     * Initializes a new cursor.
+     *
+     * @param der true if DER coding rules apply, false for BER-TLV as
+     *        specified in ISO/IEC 7816-4.
+     */
+    public TlvCursor(boolean der) {
+        mDer = der;
+    }
+
+    /**
+     * Sets the data to be parsed.
+     *
+     * @param data The array that contains the TLV objects.
+     * @param offset The position of the first TLV object.
+     * @param length The length of the TLV objects.
+     *
+     * @return This cursor.
+     *
+     * @throws IllegalArgumentException if offset or length are out of range.
+     */
+    public TlvCursor reset(byte[] data, int offset, int length)
+            throws IllegalArgumentException {
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IllegalArgumentException(
+                    ErrorStrings.paramInvalidValue("offset"));
+        }
+        mData = data;
+        mPosition = offset;
+        mEnd = offset + length;
+        mEntryOffset = offset;
+        mTagLength = 0;
+        mValueOffset = offset;
+        mValueLength = 0;
+        return this;
+    }
+
+    /**
+     * @return true if there is another TLV object to be parsed.
+     */
+    public boolean hasNext() {
+        return mPosition < mEnd;
+    }
+
+    /**
+     * Parses the next TLV object.
+     *
+     * @throws IllegalArgumentException if the TLV object is not correctly
+     *         coded or exceeds the data.
+     */
+    public void next() throws IllegalArgumentException {
+        int position = mPosition;
+        int tagLength = mDer
+                ? getDerTagLength(mData, position, mEnd)
+                : getBerTagLength(mData, position, mEnd);
+        position += tagLength;
+
+        int lengthFieldLength = mDer
+                ? getDerLengthFieldLength(mData, position, mEnd)
+                : getBerLengthFieldLength(mData, position, mEnd);
+        int valueLength = getLengthValue(mData, position, lengthFieldLength);
+        position += lengthFieldLength;
+
+        if (valueLength < 0 || valueLength > mEnd - position) {
+            throw new IllegalArgumentException(ErrorStrings.TLV_NOT_ENOUGH_DATA);
+        }
+
+        mEntryOffset = mPosition;
+        mTagLength = tagLength;
+        mValueOffset = position;
+        mValueLength = valueLength;
+        mPosition = position + valueLength;
+    }
+
+    /**
+     * Moves to the next TLV object with the specified tag.
+     *
+     * @param tag The tag to search for.
+     *
+     * @return true if the tag has been found, false if the end of the data
+     *         has been reached.
+     *
+     * @throws IllegalArgumentException if the data is not correctly coded.
+     */
+    public boolean find(int tag) throws IllegalArgumentException {
+        while (hasNext()) {
+            next();
+            if (getTag() == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the tag of the current TLV object. Tags longer than 4 bytes are
+     * truncated, use {@link #isTag(byte[])} to compare them.
+     *
+     * @return The tag bytes as big endian integer.
+     */
+    public int getTag() {
+        int tag = 0;
+        for (int i = 0; i < mTagLength; i++) {
+            tag = (tag << 8) | (mData[mEntryOffset + i] & 0xFF);
+        }
+        return tag;
+    }
+
+    /**
+     * Compares the tag of the current TLV object.
+     *
+     * @param tag The tag bytes.
+     *
+     * @return true if the current TLV object has the specified tag.
+     */
+    public boolean isTag(byte[] tag) {
+        if (tag.length != mTagLength) {
+            return false;
+        }
+        for (int i = 0; i < mTagLength; i++) {
+            if (tag[i] != mData[mEntryOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The array that contains the TLV objects.
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * @return The position of the current TLV object.
+     */
+    public int getEntryOffset() {
+        return mEntryOffset;
+    }
+
+    /**
+     * @return The total length of the current TLV object.
+     */
+    public int getEntryLength() {
+        return mValueOffset + mValueLength - mEntryOffset;
+    }
+
+    /**
+     * @return The length of the tag of the current TLV object.
+     */
+    public int getTagLength() {
+        return mTagLength;
+    }
+
+    /**
+     * @return The position of the value of the current TLV object.
+     */
+    public int getValueOffset() {
+        return mValueOffset;
+    }
+
+    /**
+     * @return The length of the value of the current TLV object.
+     */
+    public int getValueLength() {
+        return mValueLength;
+    }
+
+    /**
+     * @return The position of the next TLV object.
+     */
+    public int getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * Returns a copy of the value of the current TLV object.
+     *
+     * @return The value of the current TLV object.
+     */
+    public byte[] copyValue() {
+        byte[] value = new byte[mValueLength];
+        System.arraycopy(mData, mValueOffset, value, 0, mValueLength);
+        return value;
+    }
+
+    /**
+     * Returns the length of the BER-TLV tag field that starts at the
+     * specified position.
+     *
+     * @throws IllegalArgumentException if no valid tag is found.
+     */
+    static int getBerTagLength(byte[] array, int position, int end)
+            throws IllegalArgumentException {
+        checkAvailable(position, 1, end);
+        if ((array[position] & 0x1F) != 0x1F) {
+            // Tag is 1-byte long
+            return 1;
+        }
+        checkAvailable(position, 2, end);
+        // ISO-IEC 7816-4 5.2.2.1: In tag fields of two or more bytes,
+        // the values '00' to '1E' and '80' are invalid for the second byte.
+        if ((array[position + 1] >= 0x00 && array[position + 1] <= 0x1E)
+                || ((array[position + 1] & 0xFF) == 0x80)) {
+            throw new IllegalArgumentException(
+                    "Invalid \"tag\" field at position " + position + ".");
+        }
+        if ((array[position + 1] & 0x80) == 0) {
+            // Tag is 2-byte long
+            return 2;
+        }
+        checkAvailable(position, 3, end);
+        if ((array[position + 2] & 0x80) == 0x00) {
+            // Tag is 3-byte long
+            return 3;
+        }
+        throw new IllegalArgumentException(
+                "Invalid \"tag\" field at position " + position + ".");
+    }
+
+    /**
+     * Returns the length of the DER tag field that starts at the specified
+     * position.
+     *
+     * @throws IllegalArgumentException if no valid tag is found.
+     */
+    static int getDerTagLength(byte[] array, int position, int end)
+            throws IllegalArgumentException {
+        checkAvailable(position, 1, end);
+        if ((array[position] & 0x1F) != 0x1F) {
+            // Tag is 1-byte long
+            return 1;
+        }
+        checkAvailable(position, 2, end);
+        // ITU X.690: bits 7 to 1 of the first subsequent
+        // octet shall not all be zero.
+        if ((array[position + 1] & 0x7F) == 0x00) {
+            throw new IllegalArgumentException(ErrorStrings.TLV_INVALID_TAG);
+        }
+        // Loop until a zero is found in the bit 8 of the array
+        int length = 2;
+        while ((array[position + length - 1] & 0x80) == 0x80) {
+            checkAvailable(position, length + 1, end);
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the length of the BER-TLV length field that starts at the
+     * specified position.
+     *
+     * @throws IllegalArgumentException if no valid length field is found.
+     */
+    static int getBerLengthFieldLength(byte[] array, int position, int end)
+            throws IllegalArgumentException {
+        checkAvailable(position, 1, end);
+        int first = array[position] & 0xFF;
+        int length;
+        if (first < 0x80) {
+            length = 1;
+        } else if (first >= 0x81 && first <= 0x84) {
+            length = 1 + first - 0x80;
+        } else {
+            throw new IllegalArgumentException(
+                    "Invalid length field at position " + position + ".");
+        }
+        checkAvailable(position, length, end);
+        return length;
+    }
+
+    /**
+     * Returns the length of the DER length field that starts at the
+     * specified position.
+     *
+     * @throws IllegalArgumentException if no valid length field is found.
+     */
+    static int getDerLengthFieldLength(byte[] array, int position, int end)
+            throws IllegalArgumentException {
+        checkAvailable(position, 1, end);
+        int length;
+        if ((array[position] & 0x80) != 0x80) {
+            // Short form
+            length = 1;
+        } else {
+            // ITU X.690: in the long form, [...] the value
+            // 0xFF shall not be used [for the first byte].
+            if ((array[position] & 0xFF) == 0xFF) {
+                throw new IllegalArgumentException(
+                        ErrorStrings.TLV_INVALID_LENGTH);
+            }
+            // Bits 7 to 1 indicate the number of subsequent octets
+            length = 1 + (array[position] & 0x7F);
+        }
+        checkAvailable(position, length, end);
+        return length;
+    }
+
+    /**
+     * Converts a length field to an integer value.
+     *
+     * @param array The array that contains the length field.
+     * @param position The position of the length field.
+     * @param lengthFieldLength The length of the length field.
+     *
+     * @return The integer value of the length field.
+     */
+    static int getLengthValue(byte[] array, int position,
+            int lengthFieldLength) {
+        if (lengthFieldLength == 1) {
+            return array[position] & 0xFF;
+        }
+        // Only the first 4 subsequent octets are taken into account
+        int count = Math.min(lengthFieldLength - 1, 4);
+        int value = 0;
+        for (int i = 1; i <= count; i++) {
+            value = (value << 8) | (array[position + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static void checkAvailable(int position, int length, int end)
+            throws IllegalArgumentException {
+        if (position + length > end) {
+            throw new IllegalArgumentException(ErrorStrings.TLV_NOT_ENOUGH_DATA);
+        }
+    }
+}
@@ -45,18 +45,42 @@ public class TlvEntryWrapper {
      */
     public TlvEntryWrapper(byte[] data, int startPosition, TlvParser parser)
             throws IllegalArgumentException {
-        int position = startPosition;
-
-        mTag = parser.getTagBytes(data, startPosition);
-        position += mTag.length;
+        this(parseEntry(data, startPosition, parser));
+    }
 
-        byte[] lengthBytes = parser.getLengthBytes(data, position);
-        position += lengthBytes.length;
+    /**
+     * Initializes a new instance from the current object of a cursor.
+     *
+     * @param cursor The cursor positioned at the TLV object.
+     */
+    TlvEntryWrapper(TlvCursor cursor) {
+        mTag = new byte[cursor.getTagLength()];
+        System.arraycopy(cursor.getData(), cursor.getEntryOffset(), mTag, 0,
+                mTag.length);
+        mValue = cursor.copyValue();
+        mTotalLength = cursor.getEntryLength();
+    }
 
-        mValue = new byte[parser.getLengthValue(lengthBytes)];
-        System.arraycopy(data, position, mValue, 0, mValue.length);
+    /**
+     * Initializes a new instance from an indexed TLV object.
+     *
+     * @param index The index of the TLV objects.
+     * @param i The position of the TLV object in the index.
+     */
+    TlvEntryWrapper(TlvIndex index, int i) {
+        mTag = new byte[index.getTagLength(i)];
+        System.arraycopy(index.getData(), index.getEntryOffset(i), mTag, 0,
+                mTag.length);
+        mValue = index.copyValue(i);
+        mTotalLength = index.getEntryLength(i);
+    }
 
-        mTotalLength = mTag.length + lengthBytes.length + mValue.length;
+    private static TlvCursor parseEntry(byte[] data, int startPosition,
+            TlvParser parser) throws IllegalArgumentException {
+        TlvCursor cursor = parser.newCursor().reset(
+                data, startPosition, data.length - startPosition);
+        cursor.next();
+        return cursor;
     }
 
     /**
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.internal;
+
+/**
+ * Index of the top-level TLV objects of a byte array.
+ * <p>
+ * The index is built in a single pass by {@link TlvParser#index(byte[])}. It
+ * holds the position, tag and length of every correctly coded object at the
+ * beginning of the array, so the objects can be looked up repeatedly without
+ * parsing or copying the data again. Parsing stops at the first object that
+ * is not correctly coded.
+ */
+public final class TlvIndex {
+
+    /**
+     * Number of ints stored per TLV object.
+     */
+    private static final int STRIDE = 4;
+
+    private static final int ENTRY_OFFSET = 0;
+    private static final int TAG_LENGTH = 1;
+    private static final int VALUE_OFFSET = 2;
+    private static final int VALUE_LENGTH = 3;
+
+    private final byte[] mData;
+
+    /**
+     * Position and lengths of the TLV objects, STRIDE ints per object.
+     */
+    private int[] mEntries;
+
+    private int mSize;
+
+    /**
+     * Length of the correctly coded TLV objects at the beginning of mData.
+     */
+    private int mValidLength;
+
+    /**
+     * Parses the top-level TLV objects of the specified array.
+     *
+     * @param data The array to be indexed.
+     * @param cursor The cursor that applies the coding rules.
+     */
+    TlvIndex(byte[] data, TlvCursor cursor) {
+        mData = data;
+        mEntries = new int[STRIDE * 4];
+        cursor.reset(data, 0, data.length);
+        try {
+            while (cursor.hasNext()) {
+                cursor.next();
+                add(cursor);
+                mValidLength = cursor.getPosition();
+            }
+        } catch (IllegalArgumentException e) {
+            // If parsing fails, the valid data ends before the
+            // current object.
+        }
+    }
+
+    private void add(TlvCursor cursor) {
+        int base = mSize * STRIDE;
+        if (base + STRIDE > mEntries.length) {
+            int[] entries = new int[mEntries.length * 2];
+            System.arraycopy(mEntries, 0, entries, 0, base);
+            mEntries = entries;
+        }
+        mEntries[base + ENTRY_OFFSET] = cursor.getEntryOffset();
+        mEntries[base + TAG_LENGTH] = cursor.getTagLength();
+        mEntries[base + VALUE_OFFSET] = cursor.getValueOffset();
+        mEntries[base + VALUE_LENGTH] = cursor.getValueLength();
+        mSize++;
+    }
+
+    /**
+     * @return The indexed array.
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * @return The number of correctly coded TLV objects.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return The length of the correctly coded TLV objects at the beginning
+     *         of the array.
+     */
+    public int getValidLength() {
+        return mValidLength;
+    }
+
+    /**
+     * @return true if the whole array contains a valid TLV structure.
+     */
+    public boolean isValid() {
+        return mValidLength == mData.length;
+    }
+
+    /**
+     * Returns the tag of the specified TLV object. Tags longer than 4 bytes
+     * are truncated, use {@link #isTag(int, byte[])} to compare them.
+     *
+     * @param index The index of the TLV object.
+     *
+     * @return The tag bytes as big endian integer.
+     */
+    public int getTag(int index) {
+        int offset = getEntryOffset(index);
+        int tagLength = getTagLength(index);
+        int tag = 0;
+        for (int i = 0; i < tagLength; i++) {
+            tag = (tag << 8) | (mData[offset + i] & 0xFF);
+        }
+        return tag;
+    }
+
+    /**
+     * Compares the tag of the specified TLV object.
+     *
+     * @param index The index of the TLV object.
+     * @param tag The tag bytes.
+     *
+     * @return true if the TLV object has the specified tag.
+     */
+    public boolean isTag(int index, byte[] tag) {
+        if (tag.length != getTagLength(index)) {
+            return false;
+        }
+        int offset = getEntryOffset(index);
+        for (int i = 0; i < tag.length; i++) {
+            if (tag[i] != mData[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param index The index of the TLV object.
+     *
+     * @return The position of the TLV object.
+     */
+    public int getEntryOffset(int index) {
+        return get(index, ENTRY_OFFSET);
+    }
+
+    /**
+     * @param index The index of the TLV object.
+     *
+     * @return The total length of the TLV object.
+     */
+    public int getEntryLength(int index) {
+        return getValueOffset(index) + getValueLength(index)
+                - getEntryOffset(index);
+    }
+
+    /**
+     * @param index The index of the TLV object.
+     *
+     * @return The length of the tag of the TLV object.
+     */
+    public int getTagLength(int index) {
+        return get(index, TAG_LENGTH);
+    }
+
+    /**
+     * @param index The index of the TLV object.
+     *
+     * @return The position of the value of the TLV object.
+     */
+    public int getValueOffset(int index) {
+        return get(index, VALUE_OFFSET);
+    }
+
+    /**
+     * @param index The index of the TLV object.
+     *
+     * @return The length of the value of the TLV object.
+     */
+    public int getValueLength(int index) {
+        return get(index, VALUE_LENGTH);
+    }
+
+    /**
+     * Returns a copy of the value of the specified TLV object.
+     *
+     * @param index The index of the TLV object.
+     *
+     * @return The value of the TLV object.
+     */
+    public byte[] copyValue(int index) {
+        byte[] value = new byte[getValueLength(index)];
+        System.arraycopy(mData, getValueOffset(index), value, 0, value.length);
+        return value;
+    }
+
+    private int get(int index, int field) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException(
+                    ErrorStrings.paramInvalidValue("index"));
+        }
+        return mEntries[index * STRIDE + field];
+    }
+}
@@ -17,7 +17,6 @@
 package org.simalliance.openmobileapi.internal;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -65,6 +64,13 @@ public abstract class TlvParser {
      */
     abstract int getLengthValue(byte[] lengthBytes);
 
+    /**
+     * Creates a cursor that applies the coding rules of this parser.
+     *
+     * @return A new cursor.
+     */
+    abstract TlvCursor newCursor();
+
     /**
      * Parses the full TLV array.
      *
@@ -73,16 +79,11 @@ public abstract class TlvParser {
      * @return The list of TLV objects found in the array.
      */
     public List<TlvEntryWrapper> parseArray(byte[] array) {
-        byte[] data = getValidTlvData(array);
+        TlvIndex index = index(array);
 
-        int position = 0;
         ArrayList<TlvEntryWrapper> list = new ArrayList<TlvEntryWrapper>();
-
-        while (position < data.length) {
-            TlvEntryWrapper nextEntry
-                    = new TlvEntryWrapper(data, position, this);
-            list.add(nextEntry);
-            position += nextEntry.getTotalLength();
+        for (int i = 0; i < index.size(); i++) {
+            list.add(new TlvEntryWrapper(index, i));
         }
 
         return (List<TlvEntryWrapper>) list;
@@ -109,14 +110,14 @@ public abstract class TlvParser {
                     ErrorStrings.paramInvalidValue("startPosition"));
         }
 
-        int position = startPosition;
-        while (position < data.length) {
-            TlvEntryWrapper derEntry
-                    = new TlvEntryWrapper(data, position, this);
-            if (Arrays.equals(tag, derEntry.getTag())) {
-                return position;
-            } else {
-                position += derEntry.getTotalLength();
+        if (startPosition < data.length) {
+            TlvCursor cursor = newCursor().reset(
+                    data, startPosition, data.length - startPosition);
+            while (cursor.hasNext()) {
+                cursor.next();
+                if (cursor.isTag(tag)) {
+                    return cursor.getEntryOffset();
+                }
             }
         }
 
@@ -133,38 +134,31 @@ public abstract class TlvParser {
      *         beginning of rawData.
      */
     public byte[] getValidTlvData(byte[] rawData) {
-        if (isValidTlvStructure(rawData)) {
+        TlvIndex index = index(rawData);
+        if (index.isValid()) {
             return rawData;
         } else {
-            int position = 0;
-            while (true) {
-                try {
-                    int tmpPosition = position;
-                    byte[] tag = getTagBytes(rawData, tmpPosition);
-                    tmpPosition += tag.length;
-
-                    byte[] length = getLengthBytes(rawData, tmpPosition);
-                    tmpPosition += length.length;
-
-                    tmpPosition += getLengthValue(length);
-
-                    if (tmpPosition > rawData.length) {
-                        break;
-                    } else {
-                        position = tmpPosition;
-                    }
-                } catch (Exception e) {
-                    // If parsing fails...
-                    break;
-                }
-            }
-
+            int position = index.getValidLength();
             byte[] validData = new byte[position];
             System.arraycopy(rawData, 0, validData, 0, position);
             return validData;
         }
     }
 
+    /**
+     * Validates the specified array and indexes its top-level TLV objects in
+     * a single pass. The index covers the valid TLV structure found at the
+     * beginning of the array, i.e. the data returned by
+     * {@link #getValidTlvData(byte[])}.
+     *
+     * @param rawData The data to be indexed.
+     *
+     * @return The index of the TLV objects.
+     */
+    public TlvIndex index(byte[] rawData) {
+        return new TlvIndex(rawData, newCursor());
+    }
+
     /**
      * Checks that the length of the array is consistent with the TLV structure.
      *
@@ -173,25 +167,16 @@ public abstract class TlvParser {
      * @return true if the data contains a valid TLV structure, false otherwise.
      */
     public boolean isValidTlvStructure(byte[] data) {
-        int position = 0;
-        while (position < data.length) {
-            try {
-                // Parse tag
-                byte[] tag = getTagBytes(data, position);
-                position += tag.length;
-
-                // Parse length
-                byte[] length = getLengthBytes(data, position);
-                position += length.length;
-
-                // Increase position
-                position += getLengthValue(length);
-            } catch (Exception e) {
-                // If parsing fails...
-                return false;
+        TlvCursor cursor = newCursor().reset(data, 0, data.length);
+        try {
+            while (cursor.hasNext()) {
+                cursor.next();
             }
+        } catch (IllegalArgumentException e) {
+            // If parsing fails...
+            return false;
         }
 
-        return position == data.length;
+        return true;
     }
 }
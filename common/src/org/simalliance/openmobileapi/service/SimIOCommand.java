@@ -0,0 +1,91 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.service;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * SIM IO command of a batch, addressing an EF by File ID and file path.
+ * The terminal sets the response when the command has been exchanged.
+ */
+public class SimIOCommand implements Parcelable {
+
+    private int mFileID;
+    private String mFilePath;
+    private byte[] mCommand;
+    private byte[] mResponse;
+
+    public static final Parcelable.Creator<SimIOCommand> CREATOR = new Parcelable.Creator<SimIOCommand>() {
+        public SimIOCommand createFromParcel(Parcel in) {
+            return new SimIOCommand(in);
+        }
+
+        public SimIOCommand[] newArray(int size) {
+            return new SimIOCommand[size];
+        }
+    };
+
+    public SimIOCommand(int fileID, String filePath, byte[] command) {
+        mFileID = fileID;
+        mFilePath = filePath;
+        mCommand = command;
+    }
+
+    private SimIOCommand(Parcel in) {
+        mFileID = in.readInt();
+        mFilePath = in.readString();
+        mCommand = in.createByteArray();
+        mResponse = in.createByteArray();
+    }
+
+    public int getFileID() {
+        return mFileID;
+    }
+
+    public String getFilePath() {
+        return mFilePath;
+    }
+
+    public byte[] getCommand() {
+        return mCommand;
+    }
+
+    /**
+     * @return the response of the command or null if it has not been exchanged.
+     */
+    public byte[] getResponse() {
+        return mResponse;
+    }
+
+    public void setResponse(byte[] response) {
+        mResponse = response;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(mFileID);
+        out.writeString(mFilePath);
+        out.writeByteArray(mCommand);
+        out.writeByteArray(mResponse);
+    }
+}
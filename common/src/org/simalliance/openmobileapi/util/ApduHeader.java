@@ -0,0 +1,242 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.util;
+
+/**
+ * Validates command APDUs in place.
+ * <p>
+ * {@link #decode(byte[])} applies the same checks as
+ * {@link CommandApdu#CommandApdu(byte[])} without creating any object. The
+ * result is a descriptor packed into a long, which holds the header
+ * (CLA, INS, P1 and P2), the APDU case, the length coding and Lc. It is read
+ * with the static accessors of this class.
+ */
+public final class ApduHeader {
+
+    /**
+     * APDU case 1: no data, no Le.
+     */
+    public static final int CASE_1 = 1;
+    /**
+     * APDU case 2: no data, Le.
+     */
+    public static final int CASE_2 = 2;
+    /**
+     * APDU case 3: data, no Le.
+     */
+    public static final int CASE_3 = 3;
+    /**
+     * APDU case 4: data and Le.
+     */
+    public static final int CASE_4 = 4;
+
+    private static final int LC_MASK = 0xFFFF;
+    private static final int CASE_SHIFT = 16;
+    private static final int CASE_MASK = 0x07;
+    private static final long EXTENDED_FLAG = 1L << 20;
+    private static final int HEADER_SHIFT = 32;
+
+    /**
+     * Override default constructor to avoid instantiations.
+     */
+    private ApduHeader() {
+    }
+
+    /**
+     * Checks that the specified command is a correctly formed APDU and
+     * decodes its header.
+     *
+     * @param command The command APDU.
+     *
+     * @return The descriptor of the command.
+     *
+     * @throws IllegalArgumentException If command does not contain a valid
+     *         APDU.
+     */
+    public static long decode(byte[] command) throws IllegalArgumentException {
+        int length = command.length;
+        if (length < ISO7816.CMD_APDU_LENGTH_CASE1) {
+            throw new IllegalArgumentException("Invalid length for command ("
+                    + length + ").");
+        }
+
+        byte cla = command[ISO7816.OFFSET_CLA];
+        if (cla == (byte) 0xFF) {
+            throw new IllegalArgumentException(
+                    "Invalid value of CLA (" + Integer.toHexString(cla) + ")");
+        }
+        byte ins = command[ISO7816.OFFSET_INS];
+        if ((ins & 0x0F0) == 0x60 || ((ins & 0x0F0) == 0x90)) {
+            throw new IllegalArgumentException(
+                    "Invalid value of INS (" + Integer.toHexString(ins) + "). "
+                            + "0x6X and 0x9X are not valid values");
+        }
+
+        int apduCase;
+        boolean extended = false;
+        int lc = 0;
+        if (length == ISO7816.CMD_APDU_LENGTH_CASE1) {
+            apduCase = CASE_1;
+        } else if (length == ISO7816.CMD_APDU_LENGTH_CASE2) {
+            apduCase = CASE_2;
+        } else if (command[ISO7816.OFFSET_P3] != (byte) 0x00) {
+            // Short Lc, cannot be 0
+            lc = command[ISO7816.OFFSET_P3] & 0xFF;
+            if (length == ISO7816.CMD_APDU_LENGTH_CASE3_WITHOUT_DATA + lc) {
+                apduCase = CASE_3;
+            } else if (length
+                    == ISO7816.CMD_APDU_LENGTH_CASE4_WITHOUT_DATA + lc) {
+                apduCase = CASE_4;
+            } else {
+                throw new IllegalArgumentException(
+                        "Unexpected value of Lc (" + lc + ")");
+            }
+        } else if (length == ISO7816.CMD_APDU_LENGTH_CASE2_EXTENDED) {
+            apduCase = CASE_2;
+            extended = true;
+        } else {
+            if (length <= ISO7816.OFFSET_DATA_EXTENDED) {
+                throw new IllegalArgumentException(
+                        "Unexpected value of Lc or Le" + length);
+            }
+            lc = ((command[ISO7816.OFFSET_DATA] & 0xFF) << 8)
+                    | (command[ISO7816.OFFSET_DATA + 1] & 0xFF);
+            if (lc == 0) {
+                throw new IllegalArgumentException("Lc can't be 0");
+            }
+            if (length == ISO7816.CMD_APDU_LENGTH_CASE3_WITHOUT_DATA_EXTENDED
+                    + lc) {
+                apduCase = CASE_3;
+            } else if (length
+                    == ISO7816.CMD_APDU_LENGTH_CASE4_WITHOUT_DATA_EXTENDED
+                    + lc) {
+                apduCase = CASE_4;
+            } else {
+                throw new IllegalArgumentException(
+                        "Unexpected value of Lc (" + lc + ")");
+            }
+            extended = true;
+        }
+
+        int header = ((cla & 0xFF) << 24)
+                | ((ins & 0xFF) << 16)
+                | ((command[ISO7816.OFFSET_P1] & 0xFF) << 8)
+                | (command[ISO7816.OFFSET_P2] & 0xFF);
+        return ((long) header << HEADER_SHIFT)
+                | (extended ? EXTENDED_FLAG : 0L)
+                | ((long) apduCase << CASE_SHIFT)
+                | lc;
+    }
+
+    /**
+     * Returns the header of a command, as used by APDU filters.
+     *
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return CLA, INS, P1 and P2 as big endian integer.
+     */
+    public static int getHeader(long descriptor) {
+        return (int) (descriptor >>> HEADER_SHIFT);
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The CLA byte of the command.
+     */
+    public static byte getCla(long descriptor) {
+        return (byte) (descriptor >>> (HEADER_SHIFT + 24));
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The INS byte of the command.
+     */
+    public static byte getIns(long descriptor) {
+        return (byte) (descriptor >>> (HEADER_SHIFT + 16));
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The P1 byte of the command.
+     */
+    public static byte getP1(long descriptor) {
+        return (byte) (descriptor >>> (HEADER_SHIFT + 8));
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The P2 byte of the command.
+     */
+    public static byte getP2(long descriptor) {
+        return (byte) (descriptor >>> HEADER_SHIFT);
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The APDU case, one of {@link #CASE_1} to {@link #CASE_4}.
+     */
+    public static int getCase(long descriptor) {
+        return (int) (descriptor >>> CASE_SHIFT) & CASE_MASK;
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return true if the command uses extended length fields.
+     */
+    public static boolean isExtendedLength(long descriptor) {
+        return (descriptor & EXTENDED_FLAG) != 0;
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The length of the command data, 0 for case 1 and 2.
+     */
+    public static int getLc(long descriptor) {
+        return (int) descriptor & LC_MASK;
+    }
+
+    /**
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     *
+     * @return The position of the command data in the command.
+     */
+    public static int getDataOffset(long descriptor) {
+        return isExtendedLength(descriptor)
+                ? ISO7816.OFFSET_DATA_EXTENDED : ISO7816.OFFSET_DATA;
+    }
+
+    /**
+     * Replaces the CLA byte of a descriptor, e.g. after the channel number
+     * has been set in the command.
+     *
+     * @param descriptor The descriptor returned by {@link #decode(byte[])}.
+     * @param cla The new CLA byte.
+     *
+     * @return The updated descriptor.
+     */
+    public static long setCla(long descriptor, byte cla) {
+        return (descriptor & ~(0xFFL << (HEADER_SHIFT + 24)))
+                | ((long) (cla & 0xFF) << (HEADER_SHIFT + 24));
+    }
+}
@@ -118,6 +118,28 @@ public class CommandApdu {
         setData(data);
     }
 
+    /**
+     * Creates case 3 Command APDU with a part of the specified array as data.
+     *
+     * @param cla Value of CLA field.
+     * @param ins Value of INS field.
+     * @param p1 Value of P1 field.
+     * @param p2 Value of P2 field.
+     * @param data Array that contains the value of DATA field.
+     * @param offset Position of the DATA field in the array.
+     * @param length Length of the DATA field.
+     *
+     * @throws IllegalArgumentException if CLA, INS or Data are invalid.
+     */
+    public CommandApdu(byte cla, byte ins, byte p1, byte p2, byte[] data,
+            int offset, int length) throws IllegalArgumentException {
+        setCla(cla);
+        setIns(ins);
+        setP1(p1);
+        setP2(p2);
+        setData(data, offset, length);
+    }
+
     /**
      * Creates a case 4 Command APDU.
      *
@@ -429,18 +451,42 @@ public class CommandApdu {
                     "Data must not be null.");
         }
 
-        if (data.length > ISO7816.MAX_COMMAND_DATA_LENGTH) {
+        setData(data, 0, data.length);
+    }
+
+    /**
+     * Private method Set Data from a part of an array.
+     *
+     * @param data Array that contains the value of APDU data.
+     * @param offset Position of the data in the array.
+     * @param length Length of the data.
+     * @throws IllegalArgumentException if Data is null, 0, is too long or
+     *         exceeds the array.
+     */
+    private void setData(byte[] data, int offset, int length)
+            throws IllegalArgumentException {
+        if (data == null) {
+            throw new IllegalArgumentException(
+                    "Data must not be null.");
+        }
+
+        if (offset < 0 || length < 0 || length > data.length - offset) {
+            throw new IllegalArgumentException(
+                    "Data offset or length out of range.");
+        }
+
+        if (length > ISO7816.MAX_COMMAND_DATA_LENGTH) {
             throw new IllegalArgumentException(
                     "Data too long.");
         }
 
-        if (data.length == 0) {
+        if (length == 0) {
             throw new IllegalArgumentException(
                     "Data must not be empty.");
         }
 
-        mData = new byte[data.length];
-        System.arraycopy(data, 0, mData, 0, data.length);
+        mData = new byte[length];
+        System.arraycopy(data, offset, mData, 0, length);
     }
 
     /**
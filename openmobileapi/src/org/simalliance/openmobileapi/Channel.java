@@ -20,6 +20,9 @@
 package org.simalliance.openmobileapi;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import org.simalliance.openmobileapi.service.ISmartcardServiceChannel;
 import org.simalliance.openmobileapi.service.SmartcardError;
@@ -193,7 +196,103 @@ public class Channel {
             }
         }
     }
+
+    /**
+     * Transmits a sequence of APDU commands to the Secure Element in a single call
+     * to the system. The commands are sent one after the other, in the order of the
+     * list, and no APDU of another channel or application is interleaved between
+     * them. Each command is processed as described in transmit(byte[] command).<br>
+     * All commands are checked against the restrictions and the security policy
+     * before the first one is sent; if one of them is not allowed, no command is
+     * transmitted. If a communication error occurs while the sequence is being
+     * transmitted, the responses received so far are discarded.
+     *
+     * @param commands the APDU commands to be transmitted, each as a byte array.
+     *
+     * @return the responses received, in the same order as the commands. Each
+     * response contains the data bytes in the following order:
+     * [&lt;first data byte&gt;, ..., &lt;last data byte&gt;, &lt;sw1&gt;, &lt;sw2&gt;]
+     *
+     * @throws IOException if there is a communication problem to the reader or the Secure Element.
+     * @throws IllegalStateException if the channel is used after being closed.
+     * @throws IllegalArgumentException if one of the commands is malformed.
+     * @throws SecurityException if one of the commands is filtered by the security
+     *             policy.
+     * @throws NullPointerException if commands or one of the commands is NULL.
+     */
+    @SuppressWarnings("unchecked")
+    public List<byte[]> transmit(List<byte[]> commands) throws IOException,
+            IllegalStateException, IllegalArgumentException, SecurityException,
+            NullPointerException {
+        if (mSession.getReader().getSEService() == null
+                || !mSession.getReader().getSEService().isConnected()) {
+            throw new IllegalStateException("service not connected to system");
+        }
+        if (mChannel == null) {
+            throw new IllegalStateException("channel must not be null");
+        }
+        if (commands == null) {
+            throw new NullPointerException("commands must not be null");
+        }
+        if (commands.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        synchronized (mLock) {
+            try {
+                SmartcardError error = new SmartcardError();
+                List<byte[]> responses = mChannel.transmitBatch(commands, error);
+                if (error.isSet()) {
+                    error.throwException();
+                }
+                return responses;
+            } catch (RemoteException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+    }
     
+    /**
+     * Transmits an APDU command to the Secure Element without blocking the calling
+     * thread. The command is processed as described in transmit(byte[] command), and
+     * commands of this and other channels are still sent one at a time.<br>
+     * The returned future completes when the response has been received. If the
+     * command fails, Future.get() throws an ExecutionException whose cause is the
+     * exception transmit(byte[] command) would have thrown.
+     *
+     * @param command the APDU command to be transmitted, as a byte array.
+     *
+     * @return the pending response. The response contains the data bytes in the
+     * following order:
+     * [&lt;first data byte&gt;, ..., &lt;last data byte&gt;, &lt;sw1&gt;, &lt;sw2&gt;]
+     *
+     * @throws IllegalStateException if the service is not connected.
+     * @throws NullPointerException if command is NULL.
+     */
+    public Future<byte[]> transmitAsync(byte[] command) throws IllegalStateException,
+            NullPointerException {
+        SEService service = mSession.getReader().getSEService();
+        if (service == null || !service.isConnected()) {
+            throw new IllegalStateException("service not connected to system");
+        }
+        if (mChannel == null) {
+            throw new IllegalStateException("channel must not be null");
+        }
+        if (command == null) {
+            throw new NullPointerException("command must not be null");
+        }
+
+        TransmitFuture future = new TransmitFuture();
+        int token = service.registerTransmit(future);
+        try {
+            mChannel.transmitAsync(command, token);
+        } catch (RemoteException e) {
+            service.unregisterTransmit(token);
+            throw new IllegalStateException(e.getMessage());
+        }
+        return future;
+    }
+
     /**
      * Get the session that has opened this channel.
      * 
@@ -24,9 +24,11 @@ import org.simalliance.openmobileapi.FileViewProvider.FCP;
 import org.simalliance.openmobileapi.internal.ByteArrayConverter;
 import org.simalliance.openmobileapi.internal.DerTlvCoder;
 import org.simalliance.openmobileapi.internal.DerTlvParser;
+import org.simalliance.openmobileapi.internal.DerTlvWriter;
 import org.simalliance.openmobileapi.internal.ErrorStrings;
 import org.simalliance.openmobileapi.internal.OidParser;
 import org.simalliance.openmobileapi.internal.TlvEntryWrapper;
+import org.simalliance.openmobileapi.internal.TlvIndex;
 
 
 /**
@@ -46,6 +48,10 @@ public class PKCS15Provider extends Provider {
      * The content of EF(ODF).
      */
     private byte[] mOdfContent;
+    /**
+     * The index of the DER objects in EF(ODF), built on first use.
+     */
+    private TlvIndex mOdfIndex;
     /**
      * The content of EF(TokenInfo).
      */
@@ -216,32 +222,7 @@ public class PKCS15Provider extends Provider {
      * @return The array of EF(PrKDF) paths. May be null if empty.
      */
     public Path[] getPrivateKeyPaths() {
-        ArrayList<Path> paths = new ArrayList<Path>();
-        int position = 0;
-        DerTlvParser parser = new DerTlvParser();
-        byte[] odfContent = parser.getValidTlvData(getODF());
-
-        while (position < odfContent.length) {
-            // Parse the next DER entry
-            TlvEntryWrapper derObject
-                    = new TlvEntryWrapper(odfContent, position, parser);
-            if (isPrivateKeyTag(derObject.getTag())) {
-                try {
-                    paths.add(decodePath(derObject.getValue()));
-                } catch (IllegalArgumentException e) {
-                    // If path could not be parsed, ignore it
-                }
-            }
-
-            // Increase the position
-            position += derObject.getTotalLength();
-        }
-
-        if (paths.size() > 0) {
-            return paths.toArray(new Path[paths.size()]);
-        } else {
-            return null;
-        }
+        return getOdfPaths(TLV_TAG_PRIVATE_KEY);
     }
 
     /**
@@ -251,32 +232,8 @@ public class PKCS15Provider extends Provider {
      * @return The array of EF(PuKDF) paths. May be null if empty.
      */
     public Path[] getPublicKeyPaths() {
-        ArrayList<Path> paths = new ArrayList<Path>();
-        int position = 0;
-        DerTlvParser parser = new DerTlvParser();
-        byte[] odfContent = parser.getValidTlvData(getODF());
-
-        while (position < odfContent.length) {
-            // Parse the next DER entry
-            TlvEntryWrapper derObject
-                    = new TlvEntryWrapper(odfContent, position, parser);
-            if (isPublicKeyTag(derObject.getTag())) {
-                try {
-                    paths.add(decodePath(derObject.getValue()));
-                } catch (IllegalArgumentException e) {
-                    // If path could not be parsed, ignore it
-                }
-            }
-
-            // Increase the position
-            position += derObject.getTotalLength();
-        }
-
-        if (paths.size() > 0) {
-            return paths.toArray(new Path[paths.size()]);
-        } else {
-            return null;
-        }
+        return getOdfPaths(TLV_TAG_PUBLIC_KEY,
+                TLV_TAG_PUBLIC_KEY_TRUSTED);
     }
 
     /**
@@ -286,32 +243,8 @@ public class PKCS15Provider extends Provider {
      * @return The array of EF(CDF) paths. May be null if empty.
      */
     public Path[] getCertificatePaths() {
-        ArrayList<Path> paths = new ArrayList<Path>();
-        int position = 0;
-        DerTlvParser parser = new DerTlvParser();
-        byte[] odfContent = parser.getValidTlvData(getODF());
-
-        while (position < odfContent.length) {
-            // Parse the next DER entry
-            TlvEntryWrapper derObject
-                    = new TlvEntryWrapper(odfContent, position, parser);
-            if (isCertificateTag(derObject.getTag())) {
-                try {
-                    paths.add(decodePath(derObject.getValue()));
-                } catch (IllegalArgumentException e) {
-                    // If path could not be parsed, ignore it
-                }
-            }
-
-            // Increase the position
-            position += derObject.getTotalLength();
-        }
-
-        if (paths.size() > 0) {
-            return paths.toArray(new Path[paths.size()]);
-        } else {
-            return null;
-        }
+        return getOdfPaths(TLV_TAG_CERTIFICATE,
+                TLV_TAG_CERTIFICATE_TRUSTED, TLV_TAG_CERTIFICATE_USEFUL);
     }
 
     /**
@@ -321,32 +254,7 @@ public class PKCS15Provider extends Provider {
      * @return The array of EF(DODF) paths. May be null if empty.
      */
     public Path[] getDataObjPaths() {
-        ArrayList<Path> paths = new ArrayList<Path>();
-        int position = 0;
-        DerTlvParser parser = new DerTlvParser();
-        byte[] odfContent = parser.getValidTlvData(getODF());
-
-        while (position < odfContent.length) {
-            // Parse the next DER entry
-            TlvEntryWrapper derObject
-                    = new TlvEntryWrapper(odfContent, position, parser);
-            if (isDataObjectTag(derObject.getTag())) {
-                try {
-                    paths.add(decodePath(derObject.getValue()));
-                } catch (IllegalArgumentException e) {
-                    // If path could not be parsed, ignore it
-                }
-            }
-
-            // Increase the position
-            position += derObject.getTotalLength();
-        }
-
-        if (paths.size() > 0) {
-            return paths.toArray(new Path[paths.size()]);
-        } else {
-            return null;
-        }
+        return getOdfPaths(TLV_TAG_DATA_OBJECT);
     }
 
     /**
@@ -357,25 +265,31 @@ public class PKCS15Provider extends Provider {
      * @return The array of EF(AODF) paths. May be null if empty.
      */
     public Path[] getAuthObjPaths() {
-        ArrayList<Path> paths = new ArrayList<Path>();
-        int position = 0;
-        DerTlvParser parser = new DerTlvParser();
-        byte[] odfContent = parser.getValidTlvData(getODF());
+        return getOdfPaths(TLV_TAG_AUTHENTICATE_OBJECT);
+    }
 
-        while (position < odfContent.length) {
-            // Parse the next DER entry
-            TlvEntryWrapper derObject
-                    = new TlvEntryWrapper(odfContent, position, parser);
-            if (isAuthenticationObjectTag(derObject.getTag())) {
-                try {
-                    paths.add(decodePath(derObject.getValue()));
-                } catch (IllegalArgumentException e) {
-                    // If path could not be parsed, ignore it
+    /**
+     * Returns the paths of the EF(ODF) entries with the specified tags.
+     *
+     * @param tags The tags of the requested entries.
+     *
+     * @return The array of paths. May be null if empty.
+     */
+    private Path[] getOdfPaths(byte[]... tags) {
+        ArrayList<Path> paths = new ArrayList<Path>();
+        TlvIndex index = getOdfIndex();
+
+        for (int i = 0; i < index.size(); i++) {
+            for (byte[] tag : tags) {
+                if (index.isTag(i, tag)) {
+                    try {
+                        paths.add(decodePath(index.copyValue(i)));
+                    } catch (IllegalArgumentException e) {
+                        // If path could not be parsed, ignore it
+                    }
+                    break;
                 }
             }
-
-            // Increase the position
-            position += derObject.getTotalLength();
         }
 
         if (paths.size() > 0) {
@@ -385,6 +299,20 @@ public class PKCS15Provider extends Provider {
         }
     }
 
+    /**
+     * Returns the index of the DER objects in EF(ODF). The EF(ODF) is only
+     * parsed again if its content has been replaced.
+     *
+     * @return The index of the valid DER objects in EF(ODF).
+     */
+    private TlvIndex getOdfIndex() {
+        byte[] odfContent = getODF();
+        if (mOdfIndex == null || mOdfIndex.getData() != odfContent) {
+            mOdfIndex = new DerTlvParser().index(odfContent);
+        }
+        return mOdfIndex;
+    }
+
     /**
      * Selects and reads a PKCS#15 file. The file may be a transparent or linear
      * fixed EF. The 'index' and 'length' fields of the Path instance will be
@@ -736,29 +664,18 @@ public class PKCS15Provider extends Provider {
          * @return This Path object as a DER-encoded byte array.
          */
         public byte[] encode() {
-            byte[] derCodedPath = DerTlvCoder.encodeOctetString(mPath);
-
-            byte[] derCodedIndex;
-            byte[] derCodedLength;
+            // The sequence length is patched by the writer, so the
+            // components are not copied into intermediate arrays.
+            DerTlvWriter writer = new DerTlvWriter();
+            writer.startSequence();
+            writer.writeOctetString(mPath, 0, mPath.length);
             if (hasIndexLength()) {
-                derCodedIndex = DerTlvCoder.encodeInteger(mIndex);
-                derCodedLength = DerTlvCoder.encodeInteger(mLength);
-            } else {
-                derCodedIndex = new byte[0];
-                derCodedLength = new byte[0];
+                writer.writeInteger(mIndex);
+                writer.writeInteger(mLength);
             }
+            writer.end();
 
-            byte[] encodedDer = new byte[derCodedPath.length
-                                         + derCodedIndex.length
-                                         + derCodedLength.length];
-            System.arraycopy(derCodedPath, 0, encodedDer, 0,
-                    derCodedPath.length);
-            System.arraycopy(derCodedIndex, 0, encodedDer, derCodedPath.length,
-                    derCodedIndex.length);
-            System.arraycopy(derCodedLength, 0, encodedDer, derCodedPath.length
-                    + derCodedIndex.length, derCodedLength.length);
-
-            return DerTlvCoder.encodeSequence(encodedDer);
+            return writer.toByteArray();
         }
     }
 
@@ -881,72 +798,4 @@ public class PKCS15Provider extends Provider {
 
         return tokenInfoContent;
     }
-
-    /**
-     * Decides whether the specified byte array is a DER tag for a private key
-     * object.
-     *
-     * @param tag The tag.
-     *
-     * @return true if the specified tag represents a private key object, false
-     *         otherwise.
-     */
-    private boolean isPrivateKeyTag(byte[] tag) {
-        return Arrays.equals(tag, TLV_TAG_PRIVATE_KEY);
-    }
-
-    /**
-     * Decides whether the specified byte array is a DER tag for a public key
-     * object.
-     *
-     * @param tag The tag.
-     *
-     * @return true if the specified tag represents a public key object, false
-     *         otherwise.
-     */
-    private boolean isPublicKeyTag(byte[] tag) {
-        return Arrays.equals(tag, TLV_TAG_PUBLIC_KEY)
-                || Arrays.equals(tag, TLV_TAG_PUBLIC_KEY_TRUSTED);
-    }
-
-    /**
-     * Decides whether the specified byte array is a DER tag for a certificate
-     * object.
-     *
-     * @param tag The tag.
-     *
-     * @return true if the specified tag represents a certificate object, false
-     *         otherwise.
-     */
-    private boolean isCertificateTag(byte[] tag) {
-        return Arrays.equals(tag, TLV_TAG_CERTIFICATE)
-                || Arrays.equals(tag, TLV_TAG_CERTIFICATE_TRUSTED)
-                || Arrays.equals(tag, TLV_TAG_CERTIFICATE_USEFUL);
-    }
-
-    /**
-     * Decides whether the specified byte array is a DER tag for a data
-     * object.
-     *
-     * @param tag The tag.
-     *
-     * @return true if the specified tag represents a data object, false
-     *         otherwise.
-     */
-    private boolean isDataObjectTag(byte[] tag) {
-        return Arrays.equals(tag, TLV_TAG_DATA_OBJECT);
-    }
-
-    /**
-     * Decides whether the specified byte array is a DER tag for an
-     * authentication object.
-     *
-     * @param tag The tag.
-     *
-     * @return true if the specified tag represents an authentication object,
-     *         false otherwise.
-     */
-    private boolean isAuthenticationObjectTag(byte[] tag) {
-        return Arrays.equals(tag, TLV_TAG_AUTHENTICATE_OBJECT);
-    }
 }
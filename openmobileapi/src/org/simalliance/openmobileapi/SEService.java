@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.simalliance.openmobileapi.service.ISmartcardService;
 import org.simalliance.openmobileapi.service.ISmartcardServiceCallback;
@@ -71,8 +72,27 @@ public class SEService {
      */
     private final ISmartcardServiceCallback mCallback
         = new ISmartcardServiceCallback.Stub() {
+        @Override
+        public void onTransmitComplete(int token, byte[] response, SmartcardError error) {
+            TransmitFuture future;
+            synchronized (mPendingTransmits) {
+                future = mPendingTransmits.remove(token);
+            }
+            if (future != null) {
+                future.complete(response, error);
+            } else {
+                Log.w(SERVICE_TAG, "Unexpected transmit result for token " + token);
+            }
+        }
     };
 
+    /**
+     * Asynchronous transmissions waiting for their result, by token.
+     */
+    private final Map<Integer, TransmitFuture> mPendingTransmits = new HashMap<>();
+
+    private final AtomicInteger mNextTransmitToken = new AtomicInteger();
+
     /**
      * Callback object that allows the notification of the caller if this
      * SEService could be bound to the backend.
@@ -133,6 +153,7 @@ public class SEService {
 
             public void onServiceDisconnected(ComponentName className) {
                 mSmartcardService = null;
+                failPendingTransmits();
                 Log.v(SERVICE_TAG, "Service onServiceDisconnected");
             }
         };
@@ -201,6 +222,7 @@ public class SEService {
             }
             mSmartcardService = null;
         }
+        failPendingTransmits();
     }
 
     /**
@@ -234,6 +256,47 @@ public class SEService {
         return mCallback;
     }
 
+    /**
+     * Registers a pending asynchronous transmission.
+     *
+     * @param future the future to be completed with the result.
+     *
+     * @return the token identifying the transmission.
+     */
+    int registerTransmit(TransmitFuture future) {
+        int token = mNextTransmitToken.incrementAndGet();
+        synchronized (mPendingTransmits) {
+            mPendingTransmits.put(token, future);
+        }
+        return token;
+    }
+
+    /**
+     * Removes a pending asynchronous transmission that could not be sent.
+     *
+     * @param token the token of the transmission.
+     */
+    void unregisterTransmit(int token) {
+        synchronized (mPendingTransmits) {
+            mPendingTransmits.remove(token);
+        }
+    }
+
+    /**
+     * Fails all pending asynchronous transmissions since their results
+     * cannot be delivered anymore.
+     */
+    private void failPendingTransmits() {
+        ArrayList<TransmitFuture> pending;
+        synchronized (mPendingTransmits) {
+            pending = new ArrayList<>(mPendingTransmits.values());
+            mPendingTransmits.clear();
+        }
+        for (TransmitFuture future : pending) {
+            future.fail(new IllegalStateException("service not connected to system"));
+        }
+    }
+
     /**
      * Forms the map of the available readers.
      */
@@ -227,10 +227,6 @@ public class SecureStorageProvider extends Provider {
                     currentBufferSize = ISO7816.MAX_COMMAND_DATA_LENGTH_NO_EXTENDED;
                 }
 
-                // Initialize and fill the buffer.
-                byte[] buffer = new byte[currentBufferSize];
-                System.arraycopy(data, position, buffer, 0, currentBufferSize);
-
                 // Decide P1
                 PutDataP1 p1;
                 if (position == 0) {
@@ -241,7 +237,7 @@ public class SecureStorageProvider extends Provider {
 
                 // Put data
                 try {
-                    sendPutDataCommand(p1, buffer);
+                    sendPutDataCommand(p1, data, position, currentBufferSize);
                 } catch (ProcessingException e) {
                     try {
                         sendDeleteEntryCommand(id);
@@ -376,14 +372,7 @@ public class SecureStorageProvider extends Provider {
             int remainingBytes = data.length - position;
             // Decide how many bytes will be sent in the next
             // iteration
-            byte[] buffer;
-            if (remainingBytes < ISO7816.MAX_COMMAND_DATA_LENGTH) {
-                buffer = new byte[remainingBytes];
-            } else {
-                buffer = new byte[remainingBytes];
-            }
-            // Initialize and fill the buffer.
-            System.arraycopy(data, position, buffer, 0, buffer.length);
+            int currentBufferSize = remainingBytes;
 
             // Decide P1
             PutDataP1 p1;
@@ -395,7 +384,7 @@ public class SecureStorageProvider extends Provider {
 
             // Put data
             try {
-                sendPutDataCommand(p1, buffer);
+                sendPutDataCommand(p1, data, position, currentBufferSize);
             } catch (ProcessingException e) {
                 try {
                     sendDeleteEntryCommand(id);
@@ -429,7 +418,7 @@ public class SecureStorageProvider extends Provider {
             }
 
             // If everything worked, update the position
-            position += buffer.length;
+            position += currentBufferSize;
         }
     }
 
@@ -960,16 +949,19 @@ public class SecureStorageProvider extends Provider {
     }
 
     /**
-     * Sends a SeS PUT DATA command.
+     * Sends a SeS PUT DATA command with a block of the specified data.
      *
      * @param p1 The value for the P1 field.
-     * @param data The data to be written.
+     * @param data The array that contains the data to be written.
+     * @param offset The position of the block.
+     * @param length The length of the block.
      *
      * @throws IOException lower-level API exception.
      * @throws ProcessingException when SW != 0x9000.
+     * @throws IllegalArgumentException if the block is empty or too long.
      */
-    private void sendPutDataCommand(PutDataP1 p1, byte[] data)
-            throws IOException, ProcessingException {
+    private void sendPutDataCommand(PutDataP1 p1, byte[] data, int offset,
+            int length) throws IOException, ProcessingException {
 
         byte mP1 = 0;
         switch(p1) {
@@ -984,7 +976,7 @@ public class SecureStorageProvider extends Provider {
             break;
         }
 
-        CommandApdu apdu = new CommandApdu(ISO7816.CLA_PROPRIETARY, INS_PUT_SS_ENTRY_DATA, mP1, (byte) 0x00, data);
+        CommandApdu apdu = new CommandApdu(ISO7816.CLA_PROPRIETARY, INS_PUT_SS_ENTRY_DATA, mP1, (byte) 0x00, data, offset, length);
         ResponseApdu apduResponse = new ResponseApdu(getChannel().transmit(apdu.toByteArray()));
         int swValue = apduResponse.getSwValue();
         if (swValue != ISO7816.SW_NO_FURTHER_QUALIFICATION) {
@@ -1002,14 +994,9 @@ public class SecureStorageProvider extends Provider {
      */
     private void sendPutDataCommand(int dataSize)
         throws IOException, ProcessingException {
-        byte[] baDataSize = new byte[2];
-        System.arraycopy(
-                ByteArrayConverter.intToByteArray(dataSize),
-                2,
-                baDataSize,
-                0,
-                2);
-        sendPutDataCommand(PutDataP1.Size, baDataSize);
+        // the size is encoded in the last two bytes
+        sendPutDataCommand(PutDataP1.Size,
+                ByteArrayConverter.intToByteArray(dataSize), 2, 2);
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.simalliance.openmobileapi.service.SmartcardError;
+
+/**
+ * Pending result of Channel.transmitAsync(byte[]). It is completed when the
+ * service delivers the response through the SEService callback.
+ */
+class TransmitFuture implements Future<byte[]> {
+
+    private final CountDownLatch mDone = new CountDownLatch(1);
+
+    private byte[] mResponse;
+
+    private Exception mException;
+
+    /**
+     * Completes this future with the result delivered by the service.
+     *
+     * @param response the response APDU, or null if the error is set.
+     * @param error the error delivered by the service, may be null.
+     */
+    synchronized void complete(byte[] response, SmartcardError error) {
+        if (isDone()) {
+            return;
+        }
+        if (error != null && error.isSet()) {
+            try {
+                error.throwException();
+            } catch (Exception e) {
+                mException = e;
+            }
+        } else {
+            mResponse = response;
+        }
+        mDone.countDown();
+    }
+
+    /**
+     * Completes this future with the given exception.
+     *
+     * @param e the reason of the failure.
+     */
+    synchronized void fail(Exception e) {
+        if (isDone()) {
+            return;
+        }
+        mException = e;
+        mDone.countDown();
+    }
+
+    /**
+     * A command that has been queued in the service cannot be withdrawn.
+     *
+     * @return always <code>false</code>.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mDone.getCount() == 0;
+    }
+
+    @Override
+    public byte[] get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return getResult();
+    }
+
+    @Override
+    public byte[] get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException("transmit not completed");
+        }
+        return getResult();
+    }
+
+    private synchronized byte[] getResult() throws ExecutionException {
+        if (mException != null) {
+            throw new ExecutionException(mException);
+        }
+        return mResponse;
+    }
+}
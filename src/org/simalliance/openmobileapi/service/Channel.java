@@ -25,9 +25,13 @@ import android.os.RemoteException;
 
 import android.util.Log;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.simalliance.openmobileapi.internal.Util;
 import org.simalliance.openmobileapi.service.security.ChannelAccess;
-import org.simalliance.openmobileapi.util.CommandApdu;
+import org.simalliance.openmobileapi.util.ApduHeader;
 import org.simalliance.openmobileapi.util.ISO7816;
 
 /**
@@ -131,41 +135,124 @@ public class Channel implements IBinder.DeathRecipient {
             throw new IllegalStateException("Channel is closed");
         }
 
+        checkCallingPid();
+
+        return mSession.getReader().transmit(prepareCommand(command));
+    }
+
+    /**
+     * Transmits the given commands back-to-back on this channel. All commands
+     * are checked before the first one is sent.
+     *
+     * @param commands The commands to be transmitted.
+     *
+     * @return The responses, in the same order as the commands.
+     */
+    public List<byte[]> transmitBatch(List<byte[]> commands) throws Exception {
+
+        if (isClosed()) {
+            throw new IllegalStateException("Channel is closed");
+        }
+
+        if (commands == null) {
+            throw new NullPointerException("Commands must not be null");
+        }
+
+        checkCallingPid();
+
+        List<byte[]> preparedCommands = new ArrayList<>(commands.size());
+        for (byte[] command : commands) {
+            preparedCommands.add(prepareCommand(command));
+        }
+
+        return mSession.getReader().transmitBatch(preparedCommands);
+    }
+
+    /**
+     * Queues the given command for transmission on this channel and returns
+     * immediately. The result is delivered with the given token to the
+     * callback of the client that opened the channel.
+     *
+     * @param command The command to be transmitted.
+     * @param token The token identifying the command at the client.
+     */
+    public void transmitAsync(byte[] command, final int token) {
+        try {
+            if (isClosed()) {
+                throw new IllegalStateException("Channel is closed");
+            }
+
+            // The calling PID is not available for oneway calls.
+            checkCallingUid();
+
+            mSession.getReader().transmitAsync(prepareCommand(command),
+                    new Terminal.TransmitListener() {
+                        @Override
+                        public void onTransmitComplete(byte[] response, Exception error) {
+                            notifyTransmitComplete(token, response, error);
+                        }
+                    });
+        } catch (Exception e) {
+            notifyTransmitComplete(token, null, e);
+        }
+    }
+
+    private void notifyTransmitComplete(int token, byte[] response, Exception e) {
+        SmartcardError error = new SmartcardError();
+        if (e != null) {
+            Log.e(SmartcardService.LOG_TAG, "Error during transmitAsync()", e);
+            try {
+                error.set(e);
+            } catch (IllegalArgumentException unexpected) {
+                error.set(new IOException(e.getMessage()));
+            }
+        }
+        try {
+            mCallback.onTransmitComplete(token, response, error);
+        } catch (RemoteException ignore) {
+            Log.e(SmartcardService.LOG_TAG, "Failed to deliver transmitAsync() result", ignore);
+        }
+    }
+
+    /**
+     * Checks that the command may be sent on this channel and sets the
+     * channel number in its class byte.
+     *
+     * @param command The command to be checked.
+     *
+     * @return The command ready to be transmitted.
+     */
+    private byte[] prepareCommand(byte[] command) {
+
         if (command == null) {
             throw new NullPointerException("Command must not be null");
         }
 
-        // We only use this constructor to check that command is correctly formed
-        new CommandApdu(command);
+        // Check that command is correctly formed and decode its header once
+        long header = ApduHeader.decode(command);
         // Check that the command is allowed as per OMAPI
-        if (((command[0] & (byte) 0x80) == 0)
-                && ((byte) (command[0] & (byte) 0x60) != (byte) 0x20)) {
+        byte cla = ApduHeader.getCla(header);
+        if (((cla & (byte) 0x80) == 0)
+                && ((byte) (cla & (byte) 0x60) != (byte) 0x20)) {
             // ISO command
-            if (command[1] == ISO7816.INS_MANAGE_CHANNEL) {
+            byte ins = ApduHeader.getIns(header);
+            if (ins == ISO7816.INS_MANAGE_CHANNEL) {
                 throw new SecurityException(
                         "MANAGE CHANNEL command not allowed");
             }
-            if ((command[1] == ISO7816.INS_SELECT) && (command[2] == (byte) 0x04)) {
+            if ((ins == ISO7816.INS_SELECT)
+                    && (ApduHeader.getP1(header) == (byte) 0x04)) {
                 throw new SecurityException(
                         "SELECT by DF name command not allowed");
             }
         }
 
-        if (mChannelAccess == null) {
-            throw new SecurityException("Channel access not set.");
-        }
-
-        if (mChannelAccess.getCallingPid() != Binder.getCallingPid()) {
-            throw new SecurityException("Wrong Caller PID.");
-        }
-
         // set channel number bits
         command[0] = Util.setChannelToClassByte(command[0], mChannelNumber);
 
-        checkCommand(command);
-
-        return mSession.getReader().transmit(command);
+        checkCommand(ApduHeader.setCla(header, command[0]));
 
+        return command;
     }
 
     public boolean selectNext() throws Exception {
@@ -213,6 +300,26 @@ public class Channel implements IBinder.DeathRecipient {
         }
     }
 
+    private void checkCallingPid() {
+        if (mChannelAccess == null) {
+            throw new SecurityException("Channel access not set.");
+        }
+
+        if (mChannelAccess.getCallingPid() != Binder.getCallingPid()) {
+            throw new SecurityException("Wrong Caller PID.");
+        }
+    }
+
+    private void checkCallingUid() {
+        if (mChannelAccess == null) {
+            throw new SecurityException("Channel access not set.");
+        }
+
+        if (mChannelAccess.getCallingUid() != Binder.getCallingUid()) {
+            throw new SecurityException("Wrong Caller UID.");
+        }
+    }
+
     public void setChannelAccess(ChannelAccess channelAccess) {
         mChannelAccess = channelAccess;
     }
@@ -221,7 +328,7 @@ public class Channel implements IBinder.DeathRecipient {
         return this.mChannelAccess;
     }
 
-    private void checkCommand(byte[] command) {
+    private void checkCommand(long header) {
         if (mSession.getReader().getAccessControlEnforcer() == null) {
             throw new SecurityException("FATAL: Access Controller Enforcer not set for Terminal: "
                                             + mSession.getReader().getName());
@@ -229,7 +336,8 @@ public class Channel implements IBinder.DeathRecipient {
 
         // check command if it complies to the access rules.
         // if not an exception is thrown
-        mSession.getReader().getAccessControlEnforcer().checkCommand(this, command);
+        mSession.getReader().getAccessControlEnforcer().checkCommand(this,
+                ApduHeader.getHeader(header));
 
     }
 
@@ -304,6 +412,32 @@ public class Channel implements IBinder.DeathRecipient {
             }
         }
 
+        @Override
+        public List transmitBatch(List commands, SmartcardError error) throws RemoteException {
+            try {
+                if (commands == null) {
+                    throw new NullPointerException("Commands must not be null");
+                }
+                List<byte[]> byteCommands = new ArrayList<>(commands.size());
+                for (Object command : commands) {
+                    if (command != null && !(command instanceof byte[])) {
+                        throw new IllegalArgumentException("Commands must be byte arrays");
+                    }
+                    byteCommands.add((byte[]) command);
+                }
+                return Channel.this.transmitBatch(byteCommands);
+            } catch (Exception e) {
+                Log.e(SmartcardService.LOG_TAG, "Error during transmitBatch()", e);
+                error.set(e);
+                return null;
+            }
+        }
+
+        @Override
+        public void transmitAsync(byte[] command, int token) throws RemoteException {
+            Channel.this.transmitAsync(command, token);
+        }
+
         @Override
         public boolean selectNext(SmartcardError error) throws RemoteException {
             try {
@@ -122,6 +122,7 @@ public class Session {
         Log.v(SmartcardService.LOG_TAG, "Access control successfully enabled.");
 
         channelAccess.setCallingPid(Binder.getCallingPid());
+        channelAccess.setCallingUid(Binder.getCallingUid());
 
         Log.v(SmartcardService.LOG_TAG, "OpenBasicChannel(AID)");
         if (mReader.getBasicChannel() != null) {
@@ -192,6 +193,7 @@ public class Session {
                 mContext.getPackageManager(), aid, packageName);
         Log.v(SmartcardService.LOG_TAG, "Access control successfully enabled.");
         channelAccess.setCallingPid(Binder.getCallingPid());
+        channelAccess.setCallingUid(Binder.getCallingUid());
 
 
         Log.v(SmartcardService.LOG_TAG, "OpenLogicalChannel");
@@ -20,6 +20,7 @@
 package org.simalliance.openmobileapi.service;
 
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
@@ -39,6 +40,9 @@ import java.util.TreeMap;
 
 import dalvik.system.DexClassLoader;
 
+import org.simalliance.openmobileapi.service.security.AccessRuleStore;
+import org.simalliance.openmobileapi.service.security.AppCertHashCache;
+
 /**
  * The smartcard service is setup with privileges to access smart card hardware.
  * The service enforces the permission
@@ -70,6 +74,8 @@ public final class SmartcardService extends Service {
     @Override
     public void onCreate() {
         Log.v(LOG_TAG, Thread.currentThread().getName() + " smartcard service onCreate");
+        AppCertHashCache.getInstance().registerPackageReceiver(this);
+        AccessRuleStore.getInstance().setDirectory(getDir("access_rules", Context.MODE_PRIVATE));
         createTerminals();
     }
 
@@ -95,6 +101,9 @@ public final class SmartcardService extends Service {
             for (Terminal terminal : mTerminals.values()) {
                 terminal.dump(writer, prefix);
             }
+
+            AppCertHashCache.getInstance().dump(writer, prefix);
+            AccessRuleStore.getInstance().dump(writer, prefix);
         }
     }
 
@@ -103,6 +112,7 @@ public final class SmartcardService extends Service {
         for (Terminal terminal : mTerminals.values()) {
             terminal.onSmartcardServiceShutdown();
         }
+        AppCertHashCache.getInstance().unregisterPackageReceiver(this);
 
         Log.v(LOG_TAG, Thread.currentThread().getName()
                 + " ... smartcard service onDestroy");
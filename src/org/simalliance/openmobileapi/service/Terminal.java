@@ -27,15 +27,29 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.ServiceConnection;
 import android.content.pm.ResolveInfo;
-import android.os.AsyncTask;
 import android.os.IBinder;
 import android.os.RemoteException;
+import android.os.SystemClock;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.security.AccessControlException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 import android.content.pm.PackageManager;
@@ -50,22 +64,73 @@ import org.simalliance.openmobileapi.service.security.ChannelAccess;
  */
 public class Terminal {
 
+    /**
+     * Maximum number of APDU exchanges that may wait for the I/O thread.
+     */
+    private static final int IO_QUEUE_CAPACITY = 32;
+
+    /**
+     * Validity of the cached ATR and card presence, in milliseconds, for
+     * terminals that do not broadcast SE state changes.
+     */
+    private static final long CARD_STATE_CACHE_TTL = 1000;
+
+    /**
+     * Time, in milliseconds, a session waits for the Access Control
+     * initialization of its terminal before it initializes it itself.
+     */
+    private static final long INIT_TIME_BUDGET = 10000;
+
+    /**
+     * Initializes the Access Control of all terminals in parallel, so that
+     * a slow SE does not delay the others.
+     */
+    private static final ExecutorService sInitExecutor = Executors.newCachedThreadPool(
+            new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "Terminal-Init-" + mCount.incrementAndGet());
+                }
+            });
+
     private Context mContext;
 
     private final String mName;
 
     private ITerminalService mTerminalService;
 
+    /* Cleared when the terminal service turns out not to support SIM IO batches */
+    private volatile boolean mSimIOBatchSupported = true;
+
     private ServiceConnection mTerminalConnection;
 
     private final ArrayList<Session> mSessions = new ArrayList<>();
 
     private final Object mLock = new Object();
 
-    /* Async task */
-    InitialiseTask mInitialiseTask;
+    /* Background initialization of the Access Control, guarded by mInitLock */
+    private final Object mInitLock = new Object();
+    private Future<?> mInitialiseTask;
+
+    /* Released when the background initialization is done */
+    private volatile CountDownLatch mInitDone = new CountDownLatch(0);
+
+    private volatile long mInitDuration = -1;
 
-    private BroadcastReceiver mSEReceiver;
+    private volatile BroadcastReceiver mSEReceiver;
+
+    /* Card state cache, invalidated on SE state changes or after the TTL */
+    private final Object mCardStateLock = new Object();
+    private int mCardStateGeneration;
+    private boolean mIsCardPresentCached;
+    private boolean mCachedIsCardPresent;
+    private long mCardPresentTimestamp;
+    private boolean mIsAtrCached;
+    private byte[] mCachedAtr;
+    private long mAtrTimestamp;
+    private volatile boolean mIsSeStateChangedEventRegistered;
 
      // TODO: this info should be stored persistently to persist on service restarts.
     private boolean mIsDefaultApplicationSelectedOnBasicChannel;
@@ -75,25 +140,52 @@ public class Terminal {
      */
     private AccessControlEnforcer mAccessControlEnforcer;
 
+    /**
+     * The SE processes one APDU at a time, so every exchange with it is
+     * serialized on a single I/O thread owned by this terminal instead of
+     * holding a lock on the calling binder thread.
+     */
+    private final ThreadPoolExecutor mIoExecutor;
+
+    private volatile Thread mIoThread;
+
+    /* I/O statistics, only written by the I/O thread */
+    private volatile long mIoExchangeCount;
+    private volatile long mIoTotalWaitNanos;
+    private volatile long mIoMaxWaitNanos;
+    private volatile long mIoTotalServiceNanos;
+    private volatile long mIoMaxServiceNanos;
+    private volatile long mIoRejectedCount;
+
     public Terminal(Context context, String name, ResolveInfo info) {
         mContext = context;
         mName = name;
+        mIoExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(IO_QUEUE_CAPACITY),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "Terminal-" + mName + "-IO");
+                        mIoThread = thread;
+                        return thread;
+                    }
+                });
         mIsDefaultApplicationSelectedOnBasicChannel = true;
         mTerminalConnection = new ServiceConnection() {
             @Override
             public void onServiceConnected(ComponentName componentName, IBinder iBinder) {
                 mTerminalService = ITerminalService.Stub.asInterface(iBinder);
-                mInitialiseTask = new InitialiseTask();
-                mInitialiseTask.execute();
+                mSimIOBatchSupported = true;
+                invalidateCardState();
+                startInitialization();
             }
 
             @Override
             public void onServiceDisconnected(ComponentName componentName) {
                 mTerminalService = null;
+                invalidateCardState();
                 // Cancel the inialization background task if still running
-                if (mInitialiseTask != null) {
-                    mInitialiseTask.cancel(true);
-                }
+                cancelInitialization();
             }
         };
 
@@ -107,31 +199,61 @@ public class Terminal {
         return new SmartcardServiceReader();
     }
 
-    private class InitialiseTask extends AsyncTask<Void, Void, Void> {
-
-        @Override
-        protected void onPreExecute() {
-            super.onPreExecute();
-
+    private void startInitialization() {
+        final CountDownLatch initDone = new CountDownLatch(1);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                long start = SystemClock.elapsedRealtime();
+                try {
+                    initializeAccessControl(false);
+                } catch (Exception e) {
+                    // do nothing since this is called where nobody can react.
+                }
+                mInitDuration = SystemClock.elapsedRealtime() - start;
+                try {
+                    // Registering under the lock ensures that a cancelled
+                    // initialization never registers the receiver after
+                    // the shutdown has unregistered it.
+                    synchronized (mInitLock) {
+                        if (mInitDone == initDone && mInitialiseTask != null) {
+                            registerSeStateChangedEvent();
+                        }
+                    }
+                } finally {
+                    initDone.countDown();
+                }
+            }
+        };
+        synchronized (mInitLock) {
+            mInitDone = initDone;
+            mInitialiseTask = sInitExecutor.submit(task);
         }
+    }
 
-        @Override
-        protected Void doInBackground(Void... arg0) {
-
-            try {
-                initializeAccessControl(false);
-            } catch (Exception e) {
-                // do nothing since this is called where nobody can react.
+    private void cancelInitialization() {
+        synchronized (mInitLock) {
+            if (mInitialiseTask != null) {
+                mInitialiseTask.cancel(true);
+                // the task checks this under the lock before registering
+                // the SE state receiver
+                mInitialiseTask = null;
             }
-            return null;
+            // nobody has to wait for a cancelled initialization
+            mInitDone.countDown();
         }
+    }
 
-        @Override
-        protected void onPostExecute(Void result) {
-            super.onPostExecute(result);
-            registerSeStateChangedEvent();
-            mInitialiseTask = null;
-        }
+    /**
+     * Waits until the Access Control initialization that was started in
+     * the background when the terminal connected is done.
+     *
+     * @param timeout The maximum time to wait, in milliseconds.
+     *
+     * @return true if no initialization is pending any longer.
+     */
+    public boolean awaitInitialization(long timeout) throws InterruptedException {
+        return mInitDone.await(timeout, TimeUnit.MILLISECONDS);
     }
 
     public void registerSeStateChangedEvent() {
@@ -154,6 +276,7 @@ public class Terminal {
             @Override
             public void onReceive(Context context, Intent intent) {
                 if (intent.getAction().equals(seStateChangedAction)) {
+                    invalidateCardState();
                     try {
                         if (mTerminalService.isCardPresent()) {
                             initializeAccessControl(true);
@@ -170,6 +293,9 @@ public class Terminal {
             }
         };
         mContext.registerReceiver(mSEReceiver, intentFilter);
+        // From now on, changes of the card state are notified.
+        invalidateCardState();
+        mIsSeStateChangedEventRegistered = true;
     }
 
     /**
@@ -196,7 +322,12 @@ public class Terminal {
             if (mAccessControlEnforcer == null) {
                 mAccessControlEnforcer = new AccessControlEnforcer(this);
             }
-            return mAccessControlEnforcer.initialize(true, new ISmartcardServiceCallback.Stub(){});
+            return mAccessControlEnforcer.initialize(true, new ISmartcardServiceCallback.Stub() {
+                @Override
+                public void onTransmitComplete(int token, byte[] response, SmartcardError error) {
+                    // Internal channels are never used for asynchronous transmissions.
+                }
+            });
         } else {
             Log.i(SmartcardService.LOG_TAG, "NOT initializing Access Control for " + getName()
                     + ": SE not present.");
@@ -211,15 +342,14 @@ public class Terminal {
             Log.w(SmartcardService.LOG_TAG, "Error during closeSessions()", ignore);
         }
         // Cancel the inialization background task if still running
-        if (mInitialiseTask != null) {
-            mInitialiseTask.cancel(true);
-        }
+        cancelInitialization();
         if(mSEReceiver != null) {
-            mInitialiseTask = null;
             mContext.unregisterReceiver(mSEReceiver);
         }
+        mIsSeStateChangedEventRegistered = false;
         
         mSEReceiver = null;
+        mIoExecutor.shutdownNow();
         mContext.unbindService(mTerminalConnection);
     }
 
@@ -228,6 +358,12 @@ public class Terminal {
             throw new IOException("Secure Element is not presented.");
         }
 
+        // do not start a second initialization while the first one is running
+        if (!awaitInitialization(INIT_TIME_BUDGET)) {
+            Log.w(SmartcardService.LOG_TAG, "Access Control initialization of " + getName()
+                    + " exceeds " + INIT_TIME_BUDGET + " ms");
+        }
+
         synchronized (mLock) {
             if (mAccessControlEnforcer == null || !mAccessControlEnforcer.isInitialized()) {
                 initializeAccessControl(false);
@@ -357,12 +493,29 @@ public class Terminal {
      *         available.
      */
     public byte[] getAtr() {
+        int generation;
+        synchronized (mCardStateLock) {
+            if (mIsAtrCached && isCardStateValid(mAtrTimestamp)) {
+                return mCachedAtr == null ? null : mCachedAtr.clone();
+            }
+            generation = mCardStateGeneration;
+        }
+        byte[] atr;
         try {
-            return mTerminalService.getAtr();
+            atr = mTerminalService.getAtr();
         } catch (RemoteException e) {
             Log.e(SmartcardService.LOG_TAG, "Error during getAtr()", e);
             return null;
         }
+        synchronized (mCardStateLock) {
+            // Don't cache a value read before the last state change.
+            if (generation == mCardStateGeneration) {
+                mCachedAtr = atr == null ? null : atr.clone();
+                mAtrTimestamp = SystemClock.elapsedRealtime();
+                mIsAtrCached = true;
+            }
+        }
+        return atr;
     }
 
     /**
@@ -381,12 +534,54 @@ public class Terminal {
      *         otherwise.
      */
     public boolean isCardPresent() {
+        int generation;
+        synchronized (mCardStateLock) {
+            if (mIsCardPresentCached && isCardStateValid(mCardPresentTimestamp)) {
+                return mCachedIsCardPresent;
+            }
+            generation = mCardStateGeneration;
+        }
+        boolean isCardPresent;
         try {
-            return mTerminalService.isCardPresent();
+            isCardPresent = mTerminalService.isCardPresent();
         } catch (RemoteException e) {
             Log.w(SmartcardService.LOG_TAG, "Error during isCardPresent()", e);
             return false;
         }
+        synchronized (mCardStateLock) {
+            if (generation == mCardStateGeneration) {
+                mCachedIsCardPresent = isCardPresent;
+                mCardPresentTimestamp = SystemClock.elapsedRealtime();
+                mIsCardPresentCached = true;
+            }
+        }
+        return isCardPresent;
+    }
+
+    /**
+     * Checks whether a cached card state value may still be used. Values are
+     * valid until the next SE state change if the terminal notifies them,
+     * otherwise only for a short time.
+     *
+     * @param timestamp the time at which the value was read.
+     *
+     * @return true if the cached value may be used.
+     */
+    private boolean isCardStateValid(long timestamp) {
+        return mIsSeStateChangedEventRegistered
+                || SystemClock.elapsedRealtime() - timestamp < CARD_STATE_CACHE_TTL;
+    }
+
+    /**
+     * Drops the cached ATR and card presence.
+     */
+    private void invalidateCardState() {
+        synchronized (mCardStateLock) {
+            mCardStateGeneration++;
+            mIsCardPresentCached = false;
+            mIsAtrCached = false;
+            mCachedAtr = null;
+        }
     }
 
     /**
@@ -407,7 +602,21 @@ public class Terminal {
      * @return the response received.
      */
     @Deprecated
-    public synchronized byte[] transmit(
+    public byte[] transmit(
+            final byte[] cmd,
+            final int minRspLength,
+            final int swExpected,
+            final int swMask,
+            final String commandName) throws Exception {
+        return executeOnIoThread(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return doTransmit(cmd, minRspLength, swExpected, swMask, commandName);
+            }
+        });
+    }
+
+    private byte[] doTransmit(
             byte[] cmd,
             int minRspLength,
             int swExpected,
@@ -421,23 +630,7 @@ public class Terminal {
                 cmd[cmd.length - 1] = rsp[rsp.length - 1];
                 rsp = internalTransmit(cmd);
             } else if (sw1 == 0x61) {
-                byte[] getResponseCmd = new byte[] {
-                        cmd[0], (byte) 0xC0, 0x00, 0x00, 0x00
-                };
-                byte[] response = new byte[rsp.length - 2];
-                System.arraycopy(rsp, 0, response, 0, rsp.length - 2);
-                while (true) {
-                    getResponseCmd[4] = rsp[rsp.length - 1];
-                    rsp = internalTransmit(getResponseCmd);
-                    if (rsp.length >= 2 && rsp[rsp.length - 2] == 0x61) {
-                        response = Util.appendResponse(
-                                response, rsp, rsp.length - 2);
-                    } else {
-                        response = Util.appendResponse(response, rsp, rsp.length);
-                        break;
-                    }
-                }
-                rsp = response;
+                rsp = receiveResponseChain(cmd, rsp);
             }
         }
         if (minRspLength > 0) {
@@ -472,7 +665,62 @@ public class Terminal {
      *
      * @return the response received.
      */
-    public synchronized byte[] transmit(byte[] cmd) throws Exception {
+    public byte[] transmit(final byte[] cmd) throws Exception {
+        return executeOnIoThread(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return doTransmit(cmd);
+            }
+        });
+    }
+
+    /**
+     * Sends GET RESPONSE commands as long as the SE answers with SW 61XX and
+     * concatenates the received data into a single response.
+     *
+     * @param cmd the command APDU that has been transmitted.
+     * @param rsp the first response received, ending with SW 61XX.
+     *
+     * @return the concatenated response, ending with the last status word.
+     */
+    private byte[] receiveResponseChain(byte[] cmd, byte[] rsp) throws Exception {
+        // grows by doubling, the response is only copied once at the end
+        ByteArrayOutputStream response = new ByteArrayOutputStream(rsp.length + 256);
+        byte[] getResponseCmd = new byte[] {
+                cmd[0], (byte) 0xC0, 0x00, 0x00, 0x00
+        };
+        do {
+            response.write(rsp, 0, rsp.length - 2);
+            getResponseCmd[4] = rsp[rsp.length - 1];
+            rsp = internalTransmit(getResponseCmd);
+        } while (rsp.length >= 2 && (rsp[rsp.length - 2] & 0xFF) == 0x61);
+        response.write(rsp, 0, rsp.length);
+        return response.toByteArray();
+    }
+
+    /**
+     * Transmits the specified commands back-to-back and returns the responses
+     * in the same order. No other exchange with the terminal is interleaved
+     * between the commands. Each command is handled as in transmit(byte[]).
+     *
+     * @param cmds the command APDUs to be transmitted.
+     *
+     * @return the responses received.
+     */
+    public List<byte[]> transmitBatch(final List<byte[]> cmds) throws Exception {
+        return executeOnIoThread(new Callable<List<byte[]>>() {
+            @Override
+            public List<byte[]> call() throws Exception {
+                List<byte[]> responses = new ArrayList<>(cmds.size());
+                for (byte[] cmd : cmds) {
+                    responses.add(doTransmit(cmd));
+                }
+                return responses;
+            }
+        });
+    }
+
+    private byte[] doTransmit(byte[] cmd) throws Exception {
 
         byte[] rsp = internalTransmit(cmd);
         if (rsp.length < 2) {
@@ -485,18 +733,12 @@ public class Terminal {
             cmd[cmd.length - 1] = rsp[rsp.length - 1];
             rsp = internalTransmit(cmd);
         } else if (sw1 == 0x61) {
-            do {
-                byte[] getResponseCmd = new byte[]{
-                        cmd[0], (byte) 0xC0, 0x00, 0x00, (byte) sw2
-                };
-                byte[] tmp = internalTransmit(getResponseCmd);
-                byte[] aux = rsp;
-                rsp = new byte[aux.length + tmp.length - 2];
-                System.arraycopy(aux, 0, rsp, 0, aux.length - 2);
-                System.arraycopy(tmp, 0, rsp, aux.length - 2, tmp.length);
-                sw1 = rsp[rsp.length - 2] & 0xFF;
-                sw2 = rsp[rsp.length - 1] & 0xFF;
-            } while (sw1 == 0x61);
+            rsp = receiveResponseChain(cmd, rsp);
+            if (rsp.length < 2) {
+                throw new IOException("Unexpected response length");
+            }
+            sw1 = rsp[rsp.length - 2] & 0xFF;
+            sw2 = rsp[rsp.length - 1] & 0xFF;
         }
         if (isSelectOnBasicChannel(cmd)
                 && ((sw1 == 0x90 && sw2 == 0x00)
@@ -508,6 +750,106 @@ public class Terminal {
         return rsp;
     }
 
+    /**
+     * Queues the transmission of the specified command and returns
+     * immediately. The result is reported to the listener on the I/O thread.
+     *
+     * @param cmd the command APDU to be transmitted.
+     * @param listener the listener to be notified of the result.
+     *
+     * @throws IOException if the I/O queue is full.
+     */
+    public void transmitAsync(final byte[] cmd, final TransmitListener listener)
+            throws IOException {
+        submitToIoThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                byte[] response;
+                try {
+                    response = doTransmit(cmd);
+                } catch (Exception e) {
+                    listener.onTransmitComplete(null, e);
+                    return null;
+                }
+                listener.onTransmitComplete(response, null);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Runs an APDU exchange on the I/O thread of this terminal and waits for
+     * its completion. Exchanges issued from the I/O thread itself are run
+     * directly.
+     *
+     * @param exchange the exchange to be executed.
+     *
+     * @return the result of the exchange.
+     *
+     * @throws IOException if the I/O queue is full or the wait was interrupted.
+     */
+    private <T> T executeOnIoThread(final Callable<T> exchange) throws Exception {
+        if (Thread.currentThread() == mIoThread) {
+            return exchange.call();
+        }
+        Future<T> future = submitToIoThread(exchange);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new IOException("Error during transmit on " + getName(), cause);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + getName());
+        }
+    }
+
+    /**
+     * Queues an APDU exchange on the I/O thread of this terminal and keeps the
+     * wait and service time statistics.
+     *
+     * @param exchange the exchange to be executed.
+     *
+     * @return the pending result of the exchange.
+     *
+     * @throws IOException if the I/O queue is full.
+     */
+    private <T> Future<T> submitToIoThread(final Callable<T> exchange) throws IOException {
+        final long enqueueTime = System.nanoTime();
+        try {
+            return mIoExecutor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    long startTime = System.nanoTime();
+                    try {
+                        return exchange.call();
+                    } finally {
+                        long waitTime = startTime - enqueueTime;
+                        long serviceTime = System.nanoTime() - startTime;
+                        mIoExchangeCount++;
+                        mIoTotalWaitNanos += waitTime;
+                        mIoTotalServiceNanos += serviceTime;
+                        if (waitTime > mIoMaxWaitNanos) {
+                            mIoMaxWaitNanos = waitTime;
+                        }
+                        if (serviceTime > mIoMaxServiceNanos) {
+                            mIoMaxServiceNanos = serviceTime;
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            synchronized (mIoExecutor) {
+                mIoRejectedCount++;
+            }
+            throw new IOException("Terminal " + getName() + " is busy or shut down");
+        }
+    }
+
     /**
      * Check whether a command is a SELECT by AID sent to the basic channel.
      *
@@ -529,6 +871,62 @@ public class Terminal {
         }
     }
 
+    /**
+     * Exchanges SIM IO commands with one call to the terminal service.
+     * Terminals which do not support batches get the commands one by one.
+     *
+     * @param commands the commands to be exchanged.
+     * @return the responses in the order of the commands.
+     */
+    public byte[][] simIOExchangeBatch(List<SimIOCommand> commands)
+            throws Exception {
+        return simIOExchangeBatch(commands, true);
+    }
+
+    /**
+     * Exchanges SIM IO commands with one call to the terminal service.
+     *
+     * @param commands the commands to be exchanged.
+     * @param fallback true to exchange the commands one by one if the
+     *        terminal does not support batches.
+     * @return the responses in the order of the commands, null if batches
+     *         are not supported and fallback is false.
+     */
+    public byte[][] simIOExchangeBatch(List<SimIOCommand> commands,
+            boolean fallback) throws Exception {
+        byte[][] responses = new byte[commands.size()][];
+        if (mSimIOBatchSupported) {
+            SmartcardError error = new SmartcardError();
+            List<SimIOCommand> result;
+            try {
+                result = mTerminalService.simIOExchangeBatch(commands, error);
+            } catch (RemoteException e) {
+                throw new IOException("SIM IO error!");
+            }
+            if (error.isSet()) {
+                error.throwException();
+            }
+            if (result != null && result.size() == commands.size()) {
+                for (int i = 0; i < responses.length; i++) {
+                    responses[i] = result.get(i).getResponse();
+                }
+                return responses;
+            }
+            // terminals without batch support return an empty reply
+            Log.i(SmartcardService.LOG_TAG, mName + ": SIM IO batches not supported");
+            mSimIOBatchSupported = false;
+        }
+        if (!fallback) {
+            return null;
+        }
+        for (int i = 0; i < responses.length; i++) {
+            SimIOCommand command = commands.get(i);
+            responses[i] = simIOExchange(command.getFileID(), command.getFilePath(),
+                    command.getCommand());
+        }
+        return responses;
+    }
+
     public ChannelAccess setUpChannelAccess(
             PackageManager packageManager,
             byte[] aid,
@@ -552,6 +950,20 @@ public class Terminal {
     }
 
 
+    /**
+     * Receives the result of an asynchronous transmission.
+     */
+    public interface TransmitListener {
+
+        /**
+         * Called on the I/O thread when the transmission has completed.
+         *
+         * @param response the response received, or null if it failed.
+         * @param error the reason of the failure, or null if it succeeded.
+         */
+        void onTransmitComplete(byte[] response, Exception error);
+    }
+
     /**
      * Implementation of the SmartcardService Reader interface according to
      * OMAPI.
@@ -594,6 +1006,34 @@ public class Terminal {
         writer.println(prefix + "mIsConnected:" + (mTerminalService != null));
         writer.println();
 
+        synchronized (mCardStateLock) {
+            writer.println(prefix + "card state cache: "
+                    + (mIsSeStateChangedEventRegistered ? "event driven" : "TTL "
+                    + CARD_STATE_CACHE_TTL + " ms")
+                    + ", present: " + (mIsCardPresentCached ? mCachedIsCardPresent : "unknown"));
+        }
+        writer.println(prefix + "Access Control initialization: "
+                + (mInitDone.getCount() > 0 ? "running"
+                : mInitDuration < 0 ? "not done" : mInitDuration + " ms"));
+        writer.println();
+
+        /* Dump the APDU I/O statistics */
+        long exchangeCount = mIoExchangeCount;
+        writer.println(prefix + "APDU I/O:");
+        writer.println(prefix + "  queue depth: " + mIoExecutor.getQueue().size()
+                + "/" + IO_QUEUE_CAPACITY + ", active: " + mIoExecutor.getActiveCount());
+        writer.println(prefix + "  exchanges: " + exchangeCount
+                + ", rejected: " + mIoRejectedCount);
+        if (exchangeCount > 0) {
+            writer.println(prefix + "  wait time (us): avg "
+                    + (mIoTotalWaitNanos / exchangeCount / 1000)
+                    + ", max " + (mIoMaxWaitNanos / 1000));
+            writer.println(prefix + "  service time (us): avg "
+                    + (mIoTotalServiceNanos / exchangeCount / 1000)
+                    + ", max " + (mIoMaxServiceNanos / 1000));
+        }
+        writer.println();
+
         /* Dump the list of currunlty openned channels */
         writer.println(prefix + "List of open channels:");
 
@@ -34,12 +34,14 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.util.ArrayList;
+import java.util.Map;
 import org.simalliance.openmobileapi.service.Channel;
 import org.simalliance.openmobileapi.service.ISmartcardServiceCallback;
 import org.simalliance.openmobileapi.service.SmartcardService;
 import org.simalliance.openmobileapi.service.Terminal;
 import org.simalliance.openmobileapi.service.security.ChannelAccess.ACCESS;
 import org.simalliance.openmobileapi.service.security.ara.AraController;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.REF_DO;
 
 import org.simalliance.openmobileapi.service.security.arf.ArfController;
 
@@ -49,20 +51,22 @@ public class AccessControlEnforcer {
     private PackageManager mPackageManager = null;
 
     private AraController mAraController = null;
-    private boolean mUseAra = true;
+    private volatile boolean mUseAra = true;
+    // Read access rules from the ARA on demand instead of at startup.
+    private volatile boolean mAraLazy = false;
 
     private ArfController mArfController = null;
-    private boolean mUseArf = false;
+    private volatile boolean mUseArf = false;
 
     private AccessRuleCache mAccessRuleCache = null;
-    private boolean mRulesRead = false;
+    private volatile boolean mRulesRead = false;
 
     private Terminal mTerminal = null;
 
     private ChannelAccess mInitialChannelAccess = new ChannelAccess();
-    private boolean mFullAccess = false;
+    private volatile boolean mFullAccess = false;
 
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
 
     protected boolean[] mNfcEventFlags = null;
 
@@ -90,6 +94,33 @@ public class AccessControlEnforcer {
         return mAccessRuleCache;
     }
 
+    /**
+     * Restores the access rules stored for this terminal if they were read
+     * with the given refresh tag from the SE which is present now.
+     *
+     * @param refreshTag The current refresh tag of the SE.
+     *
+     * @return true if the stored rules are used.
+     */
+    public boolean restoreAccessRules(byte[] refreshTag) {
+        Map<REF_DO, ChannelAccess> rules = AccessRuleStore.getInstance().load(
+                mTerminal.getName(), mTerminal.getAtr(), refreshTag);
+        if (rules == null) {
+            return false;
+        }
+        mAccessRuleCache.restore(refreshTag, rules);
+        Log.i(SmartcardService.LOG_TAG, "Stored access rules are used for:" + mTerminal.getName());
+        return true;
+    }
+
+    /**
+     * Stores the current access rules of this terminal.
+     */
+    public void storeAccessRules() {
+        AccessRuleStore.getInstance().save(mTerminal.getName(), mTerminal.getAtr(),
+                mAccessRuleCache.getRefreshTag(), mAccessRuleCache.getRules());
+    }
+
     public static byte[] getDefaultAccessControlAid(){
         return AraController.getAraMAid();
     }
@@ -124,7 +155,7 @@ public class AccessControlEnforcer {
 
         if( mUseAra ){
             try {
-                mAraController.initialize(loadAtStartup, callback);
+                mAraController.initialize(loadAtStartup && !mAraLazy, callback);
                 // disable other access methods
 
                 Log.i(SmartcardService.LOG_TAG, "ARA applet is used for:" + mTerminal.getName());
@@ -220,7 +251,28 @@ public class AccessControlEnforcer {
                                                             new ByteArrayInputStream(certData));
     }
 
-    public synchronized void checkCommand(Channel channel, byte[] command) {
+    /**
+     * Checks a command against the access rules of the channel. This runs for
+     * every APDU and only reads the channel access, so it takes no lock.
+     */
+    public void checkCommand(Channel channel, byte[] command) {
+        checkCommand(channel, command, 0);
+    }
+
+    /**
+     * Checks a command against the access rules of the channel, using the
+     * header decoded by ApduHeader.
+     *
+     * @param header CLA, INS, P1 and P2 of the command as big endian integer.
+     */
+    public void checkCommand(Channel channel, int header) {
+        checkCommand(channel, null, header);
+    }
+
+    /**
+     * @param command the command, or null to match the header.
+     */
+    private void checkCommand(Channel channel, byte[] command, int header) {
 
         ChannelAccess ca = channel.getChannelAccess();
         if (ca == null) {
@@ -236,15 +288,14 @@ public class AccessControlEnforcer {
             throw new SecurityException(ACCESS_CONTROL_ENFORCER + reason);
         }
         if (ca.isUseApduFilter()) {
-            ApduFilter[] accessConditions = ca.getApduFilter();
-            if (accessConditions == null || accessConditions.length == 0) {
+            ApduFilterMatcher accessConditions = ca.getApduFilterMatcher();
+            if (accessConditions.size() == 0) {
                 throw new SecurityException(ACCESS_CONTROL_ENFORCER + "Access Rule not available: " + reason);
             }
-            for (ApduFilter ac : accessConditions) {
-                if (CommandApdu.compareHeaders(command, ac.getMask(), ac.getApdu())) {
-
-                    return;
-                }
+            if (command != null
+                    ? accessConditions.matches(command)
+                    : accessConditions.matches(header)) {
+                return;
             }
 
             throw new SecurityException(ACCESS_CONTROL_ENFORCER + "Access Rule does not match: " + reason);
@@ -291,12 +342,15 @@ public class AccessControlEnforcer {
             }
         }
 
-        channelAccess.setPackageName(packageName);
-
-        return channelAccess.clone();
+        // the rule is shared by all channels, only its clone is modified
+        ChannelAccess clone = channelAccess.clone();
+        clone.setPackageName(packageName);
+        // compile the APDU filters once for the lifetime of the channel
+        clone.getApduFilterMatcher();
+        return clone;
     }
 
-    private synchronized ChannelAccess internal_setUpChannelAccess(byte[] aid, String packageName) {
+    private ChannelAccess internal_setUpChannelAccess(byte[] aid, String packageName) {
 
         ChannelAccess channelAccess;
         if (packageName == null || packageName.isEmpty()) {
@@ -305,15 +359,15 @@ public class AccessControlEnforcer {
 
         try {
             // estimate SHA-1 hash value of the device application's certificate.
-            Certificate[] appCerts = getAPPCerts(packageName);
+            byte[][] appCertHashes = getAppCertHashes(packageName);
 
             // APP certificates must be available => otherwise Exception
-            if (appCerts == null || appCerts.length == 0) {
+            if (appCertHashes == null || appCertHashes.length == 0) {
                 throw new SecurityException("Application certificates are invalid or do not exist.");
             }
 
 
-            channelAccess = getAccessRule(aid, appCerts );
+            channelAccess = getAccessRule(aid, appCertHashes );
 
         } catch (Exception exp) {
             throw new SecurityException(exp.getMessage());
@@ -324,12 +378,26 @@ public class AccessControlEnforcer {
 
     public ChannelAccess getAccessRule( byte[] aid, Certificate[] appCerts ) throws SecurityException, CertificateEncodingException {
 
+        byte[][] appCertHashes = new byte[appCerts.length][];
+        for( int i = 0; i < appCerts.length; i++ ){
+            appCertHashes[i] = getAppCertHash(appCerts[i]);
+        }
+        return getAccessRule(aid, appCertHashes);
+    }
+
+    public ChannelAccess getAccessRule( byte[] aid, byte[][] appCertHashes ) throws SecurityException {
+
         ChannelAccess channelAccess = null;
 
         // if read all is true get rule from cache.
         if( mRulesRead ){
-            // get rules from internal storage
-            channelAccess = mAccessRuleCache.findAccessRule( aid, appCerts );
+            if( mUseAra && mAraLazy ){
+                // get rules from the ARA-M
+                channelAccess = mAraController.getAccessRule( aid, appCertHashes );
+            } else {
+                // get rules from internal storage
+                channelAccess = mAccessRuleCache.findAccessRule( aid, appCertHashes );
+            }
         }
 
         // if no rule was found return an empty access rule
@@ -381,6 +449,20 @@ public class AccessControlEnforcer {
          return appCerts.toArray(new Certificate[appCerts.size()]);
     }
 
+    /**
+     * Returns the SHA-1 hashes of the certificates of one package. The hashes
+     * are cached for all terminals until the package is updated or removed.
+     *
+     * @param packageName
+     * @return
+     * @throws CertificateException
+     * @throws SecurityException
+     */
+    public byte[][] getAppCertHashes(String packageName)
+             throws CertificateException, SecurityException {
+        return AppCertHashCache.getInstance().getAppCertHashes(mPackageManager, packageName);
+    }
+
     public static byte[] getAppCertHash(Certificate appCert) throws CertificateEncodingException
     {
         /**
@@ -404,7 +486,7 @@ public class AccessControlEnforcer {
         return md.digest(appCert.getEncoded());
     }
 
-    public synchronized boolean[] isNFCEventAllowed(
+    public boolean[] isNFCEventAllowed(
             byte[] aid,
             String[] packageNames) {
         if( mUseAra || mUseArf ){
@@ -421,32 +503,33 @@ public class AccessControlEnforcer {
         }
     }
 
-    private synchronized boolean[] internal_isNFCEventAllowed(byte[] aid, String[] packageNames) {
+    private boolean[] internal_isNFCEventAllowed(byte[] aid, String[] packageNames) {
         // the NFC Event Flags boolean array is created and filled in internal_enableAccessConditions.
-        mNfcEventFlags = new boolean[packageNames.length];
+        boolean[] nfcEventFlags = new boolean[packageNames.length];
         int i=0;
         ChannelAccess channelAccess;
         for( String packageName : packageNames ) {
             // estimate SHA-1 hash value of the device application's certificate.
-                Certificate[] appCerts;
+                byte[][] appCertHashes;
                 try {
-                    appCerts = getAPPCerts(packageName);
+                    appCertHashes = getAppCertHashes(packageName);
 
                     // APP certificates must be available => otherwise Exception
-                    if (appCerts == null || appCerts.length == 0) {
+                    if (appCertHashes == null || appCertHashes.length == 0) {
                         throw new SecurityException("Application certificates are invalid or do not exist.");
                     }
 
-                    channelAccess = getAccessRule(aid, appCerts);
-                    mNfcEventFlags[i] = (channelAccess.getNFCEventAccess() == ChannelAccess.ACCESS.ALLOWED);
+                    channelAccess = getAccessRule(aid, appCertHashes);
+                    nfcEventFlags[i] = (channelAccess.getNFCEventAccess() == ChannelAccess.ACCESS.ALLOWED);
 
                 } catch (Exception e) {
                     Log.w(SmartcardService.LOG_TAG, " Access Rules for NFC: " + e.getLocalizedMessage());
-                    mNfcEventFlags[i] = false;
+                    nfcEventFlags[i] = false;
                 }
                 i++;
         }
-        return mNfcEventFlags;
+        mNfcEventFlags = nfcEventFlags;
+        return nfcEventFlags;
     }
 
 
@@ -456,12 +539,17 @@ public class AccessControlEnforcer {
 
        writer.println(prefix + "mUseArf: " + mUseArf);
        writer.println(prefix + "mUseAra: " + mUseAra);
+       writer.println(prefix + "mAraLazy: " + mAraLazy);
        writer.println(prefix + "mInitialChannelAccess:");
        writer.println(prefix + "  " + mInitialChannelAccess.toString());
        writer.println();
 
        /* Dump the access rule cache */
        if(mAccessRuleCache != null) mAccessRuleCache.dump(writer, prefix);
+
+       /* Dump the ARF file cache */
+       ArfController arfController = mArfController;
+       if(arfController != null) arfController.dump(writer, prefix);
     }
 
     private void readSecurityProfile() {
@@ -477,7 +565,11 @@ public class AccessControlEnforcer {
             mUseAra = level.contains("useara");
             mFullAccess = level.contains("fullaccess");
         }
-        Log.i(SmartcardService.LOG_TAG, "Allowed ACE mode: ara=" + mUseAra + " arf=" + mUseArf + " fullaccess=" + mFullAccess );
+        // reading ARA rules on demand only changes when rules are read
+        String araMode = SystemProperties.get("service.seek.ara", "");
+        araMode = SystemProperties.get("persist.service.seek.ara", araMode);
+        mAraLazy = araMode.contains("lazy");
+        Log.i(SmartcardService.LOG_TAG, "Allowed ACE mode: ara=" + mUseAra + " arf=" + mUseArf + " fullaccess=" + mFullAccess + " aralazy=" + mAraLazy );
     }
 
 }
@@ -22,9 +22,13 @@ import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.simalliance.openmobileapi.service.SmartcardService;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.AID_REF_DO;
@@ -40,30 +44,85 @@ public class AccessRuleCache {
     // 2012-09-25
     // the refresh tag has to be valid as long as AxxController is valid
     // a pure static element would cause that rules are not read any longer once the AxxController is recreated.
-    private byte[]  mRefreshTag=null;
+    private volatile byte[]  mRefreshTag=null;
 
 
-    private Map<REF_DO, ChannelAccess> mRuleCache = new HashMap<>();
+    // Published rules. They are never modified once published, so readers
+    // can use them without locking while a new set of rules is being loaded.
+    private volatile Rules mRuleCache = new Rules(new HashMap<REF_DO, ChannelAccess>());
+
+    // Rules being loaded, published with publish().
+    private Map<REF_DO, ChannelAccess> mPendingRuleCache = null;
+
+    // Maximum number of access decisions remembered per set of published rules.
+    private static final int DECISION_CACHE_SIZE = 64;
+
+    private final AtomicLong mDecisionHits = new AtomicLong();
+    private final AtomicLong mDecisionMisses = new AtomicLong();
 
     /**
      * Clears access rule cache and refresh tag.
      */
-    public void reset(){
+    public synchronized void reset(){
         mRefreshTag = null;
-        mRuleCache.clear();
+        mPendingRuleCache = null;
+        mRuleCache = new Rules(new HashMap<REF_DO, ChannelAccess>());
     }
 
     /**
-     * Clears access rule cache only.
+     * Starts loading a new set of access rules. The current rules remain
+     * in use until the new ones are published.
      */
-    public void clearCache(){
-        mRuleCache.clear();
+    public synchronized void clearCache(){
+        mPendingRuleCache = new HashMap<>();
     }
 
-    public ChannelAccess put(REF_DO ref_do_key, AR_DO ar_do) {
+    /**
+     * Makes the rules loaded since the last call to clearCache() visible
+     * to findAccessRule().
+     */
+    public synchronized void publish(){
+        if( mPendingRuleCache != null ){
+            mRuleCache = new Rules(mPendingRuleCache);
+            mPendingRuleCache = null;
+        }
+    }
+
+    /**
+     * Replaces the current rules and refresh tag by rules that were read
+     * before with this refresh tag, e.g. from the access rule store.
+     */
+    public synchronized void restore(byte[] refreshTag, Map<REF_DO, ChannelAccess> rules){
+        mRefreshTag = refreshTag;
+        mPendingRuleCache = null;
+        mRuleCache = new Rules(new HashMap<>(rules));
+    }
+
+    /**
+     * @return the published rules. The returned map must not be modified.
+     */
+    public Map<REF_DO, ChannelAccess> getRules(){
+        return mRuleCache.mRules;
+    }
+
+    /**
+     * Returns the rules being loaded. If no load was started, the load
+     * starts from a copy of the published rules.
+     */
+    private Map<REF_DO, ChannelAccess> getPendingRuleCache(){
+        if( mPendingRuleCache == null ){
+            mPendingRuleCache = new HashMap<>();
+            for (Map.Entry<REF_DO, ChannelAccess> entry : mRuleCache.mRules.entrySet()) {
+                mPendingRuleCache.put(entry.getKey(), entry.getValue().clone());
+            }
+        }
+        return mPendingRuleCache;
+    }
+
+    public synchronized ChannelAccess put(REF_DO ref_do_key, AR_DO ar_do) {
 
         ChannelAccess channelAccess = mapArDo2ChannelAccess( ar_do );
-        this.mRuleCache.put(ref_do_key, channelAccess);
+        getPendingRuleCache().put(ref_do_key, channelAccess);
         return channelAccess;
     }
 
@@ -73,10 +132,11 @@ public class AccessRuleCache {
         putWithMerge( ref_do, channelAccess );
     }
 
-    public void putWithMerge( REF_DO ref_do, ChannelAccess channelAccess ) {
+    public synchronized void putWithMerge( REF_DO ref_do, ChannelAccess channelAccess ) {
 
-        if( mRuleCache.containsKey(ref_do)){
-            ChannelAccess ca = mRuleCache.get(ref_do);
+        Map<REF_DO, ChannelAccess> ruleCache = getPendingRuleCache();
+        if( ruleCache.containsKey(ref_do)){
+            ChannelAccess ca = ruleCache.get(ref_do);
             Log.v(SmartcardService.LOG_TAG, "Access Rule with " + ref_do.toString() + " already exists.");
 
             // if new ac condition is more restrictive then use their settings
@@ -138,13 +198,47 @@ public class AccessRuleCache {
             Log.v(SmartcardService.LOG_TAG, "Merged Access Rule: " + ca.toString());
             return;
         }
-        mRuleCache.put(ref_do, channelAccess);
+        ruleCache.put(ref_do, channelAccess);
     }
 
 
     public ChannelAccess findAccessRule( byte[] aid, Certificate[] appCerts) throws AccessControlException {
 
+        byte[][] appCertHashes = new byte[appCerts.length][];
+        try {
+            for( int i = 0; i < appCerts.length; i++ ){
+                appCertHashes[i] = AccessControlEnforcer.getAppCertHash(appCerts[i]);
+            }
+        } catch (CertificateEncodingException e) {
+            throw new AccessControlException("Problem with Application Certificate.");
+        }
+        return findAccessRule(aid, appCertHashes);
+    }
+
+    public ChannelAccess findAccessRule( byte[] aid, byte[][] appCertHashes) throws AccessControlException {
+
+        // work on one snapshot of the rules for the whole search,
+        // decisions are cached together with the rules they were taken from.
+        Rules ruleCache = mRuleCache;
+        DecisionKey key = new DecisionKey(aid, appCertHashes);
+        synchronized (ruleCache.mDecisions) {
+            if( ruleCache.mDecisions.containsKey(key) ){
+                mDecisionHits.incrementAndGet();
+                return ruleCache.mDecisions.get(key);
+            }
+        }
+        mDecisionMisses.incrementAndGet();
+
+        ChannelAccess channelAccess = searchAccessRule(ruleCache, aid, appCertHashes);
+        synchronized (ruleCache.mDecisions) {
+            ruleCache.mDecisions.put(key.copy(), channelAccess);
+        }
+        return channelAccess;
+    }
+
+    private static ChannelAccess searchAccessRule( Rules ruleCache, byte[] aid, byte[][] appCertHashes) {
 
+        ChannelAccess channelAccess;
 
         // TODO: check difference between DeviceCertHash and Certificate Chain (EndEntityCertHash, IntermediateCertHash (1..n), RootCertHash)
         // The DeviceCertificate is equal to the EndEntityCertificate.
@@ -153,27 +247,22 @@ public class AccessRuleCache {
 
         AID_REF_DO aid_ref_do = getAidRefDo(aid);
         Hash_REF_DO hash_ref_do;
-        REF_DO ref_do;
 
         // Search Rule A ( Certificate(s); AID )
         // walk through certificate chain.
-        for( Certificate appCert : appCerts ){
+        for( byte[] appCertHash : appCertHashes ){
 
-            try {
-                hash_ref_do = new Hash_REF_DO(AccessControlEnforcer.getAppCertHash(appCert));
-                ref_do = new REF_DO(aid_ref_do, hash_ref_do);
+            hash_ref_do = new Hash_REF_DO(appCertHash);
 
-                if( mRuleCache.containsKey( ref_do ) ){
-                    return mRuleCache.get( ref_do );
-                }
-            } catch (CertificateEncodingException e) {
-                throw new AccessControlException("Problem with Application Certificate.");
+            channelAccess = ruleCache.get( aid_ref_do, hash_ref_do );
+            if( channelAccess != null ){
+                return channelAccess;
             }
         }
         // no rule found,
         // now we have to check if the given AID
         // is used together with another specific hash value (another device application)
-        if( searchForRulesWithSpecificAidButOtherHash(aid_ref_do) != null ){
+        if( searchForRulesWithSpecificAidButOtherHash(ruleCache, aid_ref_do) ){
             Log.v(SmartcardService.LOG_TAG, "Conflict Resolution Case A returning access rule \'NEVER\'.");
             ChannelAccess ca = new ChannelAccess();
             ca.setApduAccess(ChannelAccess.ACCESS.DENIED);
@@ -186,31 +275,27 @@ public class AccessRuleCache {
         // SearchRule B ( <AllDeviceApplications>; AID)
         aid_ref_do =  getAidRefDo(aid);
         hash_ref_do = new Hash_REF_DO(); // empty hash ref
-        ref_do = new REF_DO(aid_ref_do, hash_ref_do);
 
-        if( mRuleCache.containsKey( ref_do ) ){
-            return mRuleCache.get( ref_do );
+        channelAccess = ruleCache.get( aid_ref_do, hash_ref_do );
+        if( channelAccess != null ){
+            return channelAccess;
         }
 
         // Search Rule C ( Certificate(s); <AllSEApplications> )
         aid_ref_do = new AID_REF_DO(AID_REF_DO._TAG);
-        for( Certificate appCert : appCerts ){
-            try {
-                hash_ref_do = new Hash_REF_DO(AccessControlEnforcer.getAppCertHash(appCert));
-                ref_do = new REF_DO(aid_ref_do, hash_ref_do);
+        for( byte[] appCertHash : appCertHashes ){
+            hash_ref_do = new Hash_REF_DO(appCertHash);
 
-                if( mRuleCache.containsKey( ref_do ) ){
-                    return mRuleCache.get( ref_do );
-                }
-            } catch (CertificateEncodingException e) {
-                throw new AccessControlException("Problem with Application Certificate.");
+            channelAccess = ruleCache.get( aid_ref_do, hash_ref_do );
+            if( channelAccess != null ){
+                return channelAccess;
             }
         }
 
         // no rule found,
         // now we have to check if the all AID DO
         // is used together with another Hash
-        if( this.searchForRulesWithAllAidButOtherHash() != null ){
+        if( searchForRulesWithAllAidButOtherHash(ruleCache) ){
             Log.v(SmartcardService.LOG_TAG, "Conflict Resolution Case C returning access rule \'NEVER\'.");
             ChannelAccess ca = new ChannelAccess();
             ca.setApduAccess(ChannelAccess.ACCESS.DENIED);
@@ -222,10 +307,10 @@ public class AccessRuleCache {
         // SearchRule D ( <AllDeviceApplications>; <AllSEApplications>)
         aid_ref_do =  new AID_REF_DO(AID_REF_DO._TAG);
         hash_ref_do = new Hash_REF_DO();
-        ref_do = new REF_DO(aid_ref_do, hash_ref_do);
 
-        if( mRuleCache.containsKey( ref_do ) ){
-            return mRuleCache.get( ref_do );
+        channelAccess = ruleCache.get( aid_ref_do, hash_ref_do );
+        if( channelAccess != null ){
+            return channelAccess;
         }
         return null;
     }
@@ -262,31 +347,22 @@ public class AccessRuleCache {
      * In own words:
      * Search the rules cache for a rule that contains the wanted AID but with another specific Hash value.
      */
-    private REF_DO searchForRulesWithSpecificAidButOtherHash(AID_REF_DO aid_ref_do) {
+    private static boolean searchForRulesWithSpecificAidButOtherHash(
+            Rules ruleCache, AID_REF_DO aid_ref_do) {
 
         // AID has to be specific
         if( aid_ref_do == null ){
-            return null;
+            return false;
         }
         // C0 00 is specific -> default AID
         // 4F 00 is NOT specific -> all AIDs
         if( aid_ref_do.getTag() == AID_REF_DO._TAG &&
                 (aid_ref_do.getAid() == null || aid_ref_do.getAid().length == 0)){
-            return null;
+            return false;
         }
 
-        Set<REF_DO> keySet = mRuleCache.keySet();
-        for (REF_DO ref_do : keySet) {
-            if (aid_ref_do.equals(ref_do.getAidDo())) {
-                if (ref_do.getHashDo() != null &&
-                        ref_do.getHashDo().getHash() != null &&
-                        ref_do.getHashDo().getHash().length > 0) {
-                    // this ref_do contains the search AID and a specific hash value
-                    return ref_do;
-                }
-            }
-        }
-        return null;
+        // is there a rule with the search AID and a specific hash value?
+        return ruleCache.hasSpecificHash(aid_ref_do);
     }
 
     /*
@@ -301,23 +377,11 @@ public class AccessRuleCache {
      * In own words:
      * Search the rules cache for a rule that contains a Hash with an all SE AID (4F 00).
     */
-    private Object searchForRulesWithAllAidButOtherHash() {
-
-        AID_REF_DO aid_ref_do = new AID_REF_DO(AID_REF_DO._TAG);
-
-        Set<REF_DO> keySet = mRuleCache.keySet();
-        for (REF_DO ref_do : keySet) {
-            if (aid_ref_do.equals(ref_do.getAidDo())) {
-                // aid tlv is equal
-                if (ref_do.getHashDo() != null &&
-                        (ref_do.getHashDo().getHash() != null && ref_do.getHashDo().getHash().length > 0)) {
-                    // return ref_do if
-                    // a HASH value is available and has a length > 0 (SHA1_LEN)
-                    return ref_do;
-                }
-            }
-        }
-        return null;
+    private static boolean searchForRulesWithAllAidButOtherHash(Rules ruleCache) {
+
+        // is there a rule with all SE AID (4F 00) and a HASH value with
+        // a length > 0 (SHA1_LEN)?
+        return ruleCache.hasSpecificHash(new AID_REF_DO(AID_REF_DO._TAG));
     }
 
     public static ChannelAccess mapArDo2ChannelAccess(AR_DO ar_do ){
@@ -375,7 +439,7 @@ public class AccessRuleCache {
         return mRefreshTag;
     }
 
-    public void setRefreshTag(byte[] refreshTag) {
+    public synchronized void setRefreshTag(byte[] refreshTag) {
         this.mRefreshTag = refreshTag;
     }
 
@@ -390,12 +454,15 @@ public class AccessRuleCache {
         else for(byte oneByte: mRefreshTag) writer.printf("%02X:", oneByte);
         writer.println();
 
+        writer.println(prefix + "Decision cache: " + mDecisionHits.get() + " hits, "
+                + mDecisionMisses.get() + " misses");
+
         /* Dump the rules cache */
         writer.println(prefix + "rules dump:");
         prefix += "  ";
 
         int i = 0;
-        for (Map.Entry<REF_DO, ChannelAccess> entry : mRuleCache.entrySet()) {
+        for (Map.Entry<REF_DO, ChannelAccess> entry : mRuleCache.mRules.entrySet()) {
             i++;
             writer.print(prefix + "rule " + i + ": ");
             writer.println(entry.getKey().toString());
@@ -406,4 +473,103 @@ public class AccessRuleCache {
 
         writer.println();
     }
+
+    /**
+     * Immutable set of published access rules. The rules are indexed by
+     * AID and then by hash, and the AIDs having a rule for a specific hash
+     * are recorded, so that all search steps and the conflict resolution
+     * are simple lookups.
+     */
+    private static final class Rules {
+
+        final Map<REF_DO, ChannelAccess> mRules;
+
+        final Map<AID_REF_DO, Map<Hash_REF_DO, ChannelAccess>> mRulesByAid = new HashMap<>();
+
+        final Set<AID_REF_DO> mAidsWithSpecificHash = new HashSet<>();
+
+        // Access decisions taken from these rules, in access order.
+        final Map<DecisionKey, ChannelAccess> mDecisions =
+                new LinkedHashMap<DecisionKey, ChannelAccess>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<DecisionKey, ChannelAccess> eldest) {
+                        return size() > DECISION_CACHE_SIZE;
+                    }
+                };
+
+        Rules(Map<REF_DO, ChannelAccess> rules) {
+            mRules = Collections.unmodifiableMap(rules);
+            for (Map.Entry<REF_DO, ChannelAccess> entry : rules.entrySet()) {
+                AID_REF_DO aid_ref_do = entry.getKey().getAidDo();
+                Hash_REF_DO hash_ref_do = entry.getKey().getHashDo();
+
+                Map<Hash_REF_DO, ChannelAccess> rulesByHash = mRulesByAid.get(aid_ref_do);
+                if (rulesByHash == null) {
+                    rulesByHash = new HashMap<>();
+                    mRulesByAid.put(aid_ref_do, rulesByHash);
+                }
+                rulesByHash.put(hash_ref_do, entry.getValue());
+
+                if (hash_ref_do != null &&
+                        hash_ref_do.getHash() != null &&
+                        hash_ref_do.getHash().length > 0) {
+                    mAidsWithSpecificHash.add(aid_ref_do);
+                }
+            }
+        }
+
+        ChannelAccess get(AID_REF_DO aid_ref_do, Hash_REF_DO hash_ref_do) {
+            Map<Hash_REF_DO, ChannelAccess> rulesByHash = mRulesByAid.get(aid_ref_do);
+            return rulesByHash == null ? null : rulesByHash.get(hash_ref_do);
+        }
+
+        boolean hasSpecificHash(AID_REF_DO aid_ref_do) {
+            return mAidsWithSpecificHash.contains(aid_ref_do);
+        }
+    }
+
+    /**
+     * Key of a cached access decision: the AID and the ordered certificate
+     * hashes of the device application.
+     */
+    private static final class DecisionKey {
+
+        private final byte[] mAid;
+
+        private final byte[][] mAppCertHashes;
+
+        private final int mHashCode;
+
+        DecisionKey(byte[] aid, byte[][] appCertHashes) {
+            mAid = aid;
+            mAppCertHashes = appCertHashes;
+            mHashCode = 31 * Arrays.hashCode(mAid) + Arrays.deepHashCode(mAppCertHashes);
+        }
+
+        /**
+         * @return a key which does not share the arrays of the caller.
+         */
+        DecisionKey copy() {
+            byte[][] appCertHashes = new byte[mAppCertHashes.length][];
+            for (int i = 0; i < mAppCertHashes.length; i++) {
+                appCertHashes[i] = mAppCertHashes[i] == null ? null : mAppCertHashes[i].clone();
+            }
+            return new DecisionKey(mAid == null ? null : mAid.clone(), appCertHashes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) obj;
+            return Arrays.equals(mAid, other.mAid)
+                    && Arrays.deepEquals(mAppCertHashes, other.mAppCertHashes);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
 }
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.service.security;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.simalliance.openmobileapi.service.SmartcardService;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.AID_REF_DO;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Hash_REF_DO;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.REF_DO;
+
+/**
+ * Persistent store of the access rules of each terminal. The rules are
+ * stored together with the ATR of the SE and the refresh tag they were read
+ * with, so that after a restart of the service they can be used again as
+ * soon as the SE reports the same refresh tag, without reading the rules.
+ */
+public final class AccessRuleStore {
+
+    private static final AccessRuleStore sInstance = new AccessRuleStore();
+
+    private static final int FILE_MAGIC = 0x41524331; // "ARC1"
+
+    private static final int RECORD_MAGIC = 0x41525231; // "ARR1"
+
+    private static final int NO_HASH_DO = -2;
+
+    private static final int NULL_VALUE = -1;
+
+    private File mDirectory = null;
+
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    private AccessRuleStore() {
+    }
+
+    public static AccessRuleStore getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Sets the directory the rules are stored in. Without a directory
+     * nothing is stored.
+     *
+     * @param directory The private directory of the service, or null.
+     */
+    public synchronized void setDirectory(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Loads the rules stored for the given terminal.
+     *
+     * @param terminalName The name of the terminal.
+     * @param atr The ATR of the SE, or null if not available.
+     * @param refreshTag The current refresh tag of the SE.
+     *
+     * @return The stored rules, or null if there are no rules stored for
+     *         this SE and refresh tag.
+     */
+    public synchronized Map<REF_DO, ChannelAccess> load(
+            String terminalName, byte[] atr, byte[] refreshTag) {
+        File file = getFile(terminalName);
+        if (file == null || refreshTag == null) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != FILE_MAGIC
+                    || !Arrays.equals(readBytes(in), atr == null ? new byte[0] : atr)
+                    || !Arrays.equals(readBytes(in), refreshTag)) {
+                mMisses++;
+                return null;
+            }
+            int count = in.readInt();
+            Map<REF_DO, ChannelAccess> rules = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                REF_DO ref_do = readRefDo(in);
+                rules.put(ref_do, readChannelAccess(in));
+            }
+            mHits++;
+            return rules;
+        } catch (FileNotFoundException e) {
+            mMisses++;
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.w(SmartcardService.LOG_TAG, "Stored access rules of " + terminalName
+                    + " are invalid: " + e.getLocalizedMessage());
+            mMisses++;
+            file.delete();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Stores the rules of the given terminal, replacing the rules stored
+     * before.
+     *
+     * @param terminalName The name of the terminal.
+     * @param atr The ATR of the SE, or null if not available.
+     * @param refreshTag The refresh tag the rules were read with.
+     * @param rules The rules.
+     */
+    public synchronized void save(String terminalName, byte[] atr, byte[] refreshTag,
+            Map<REF_DO, ChannelAccess> rules) {
+        File file = getFile(terminalName);
+        if (file == null || refreshTag == null) {
+            return;
+        }
+
+        // write to a temporary file first, so that an interrupted write
+        // never leaves a truncated rule set behind.
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(FILE_MAGIC);
+            writeBytes(out, atr == null ? new byte[0] : atr);
+            writeBytes(out, refreshTag);
+            out.writeInt(rules.size());
+            for (Map.Entry<REF_DO, ChannelAccess> entry : rules.entrySet()) {
+                writeRefDo(out, entry.getKey());
+                writeChannelAccess(out, entry.getValue());
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("cannot rename " + tmpFile.getName());
+            }
+        } catch (IOException e) {
+            Log.w(SmartcardService.LOG_TAG, "Access rules of " + terminalName
+                    + " not stored: " + e.getLocalizedMessage());
+            tmpFile.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    /**
+     * Removes the rules stored for the given terminal.
+     *
+     * @param terminalName The name of the terminal.
+     */
+    public synchronized void delete(String terminalName) {
+        File file = getFile(terminalName);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Loads a record that was stored for the given terminal and SE, e.g.
+     * information needed to locate the rules on the SE.
+     *
+     * @param terminalName The name of the terminal.
+     * @param type The type of the record, used as file extension.
+     * @param atr The ATR of the SE, or null if not available.
+     *
+     * @return The record, or null if there is no record for this SE.
+     */
+    public synchronized byte[] loadRecord(String terminalName, String type, byte[] atr) {
+        File file = getFile(terminalName, type);
+        if (file == null) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != RECORD_MAGIC
+                    || !Arrays.equals(readBytes(in), atr == null ? new byte[0] : atr)) {
+                return null;
+            }
+            return readBytes(in);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(SmartcardService.LOG_TAG, "Stored " + type + " record of " + terminalName
+                    + " is invalid: " + e.getLocalizedMessage());
+            file.delete();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Stores a record for the given terminal and SE.
+     *
+     * @param terminalName The name of the terminal.
+     * @param type The type of the record, used as file extension.
+     * @param atr The ATR of the SE, or null if not available.
+     * @param record The record, or null to remove the stored record.
+     */
+    public synchronized void saveRecord(String terminalName, String type, byte[] atr,
+            byte[] record) {
+        File file = getFile(terminalName, type);
+        if (file == null) {
+            return;
+        }
+        if (record == null) {
+            file.delete();
+            return;
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(RECORD_MAGIC);
+            writeBytes(out, atr == null ? new byte[0] : atr);
+            writeBytes(out, record);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("cannot rename " + tmpFile.getName());
+            }
+        } catch (IOException e) {
+            Log.w(SmartcardService.LOG_TAG, type + " record of " + terminalName
+                    + " not stored: " + e.getLocalizedMessage());
+            tmpFile.delete();
+        } finally {
+            close(out);
+        }
+    }
+
+    private File getFile(String terminalName) {
+        return getFile(terminalName, "rules");
+    }
+
+    private File getFile(String terminalName, String type) {
+        if (mDirectory == null || terminalName == null) {
+            return null;
+        }
+        return new File(mDirectory, terminalName.replaceAll("[^A-Za-z0-9_-]", "_") + "." + type);
+    }
+
+    private static void writeRefDo(DataOutputStream out, REF_DO ref_do) throws IOException {
+        AID_REF_DO aid_ref_do = ref_do.getAidDo();
+        Hash_REF_DO hash_ref_do = ref_do.getHashDo();
+
+        out.writeInt(aid_ref_do == null ? NULL_VALUE : aid_ref_do.getTag());
+        if (aid_ref_do != null) {
+            writeBytes(out, aid_ref_do.getAid());
+        }
+        if (hash_ref_do == null) {
+            out.writeInt(NO_HASH_DO);
+        } else {
+            writeBytes(out, hash_ref_do.getHash());
+        }
+    }
+
+    private static REF_DO readRefDo(DataInputStream in) throws IOException {
+        AID_REF_DO aid_ref_do = null;
+        int aidTag = in.readInt();
+        if (aidTag != NULL_VALUE) {
+            aid_ref_do = new AID_REF_DO(aidTag, readBytes(in));
+        }
+
+        Hash_REF_DO hash_ref_do = null;
+        int hashLength = in.readInt();
+        if (hashLength != NO_HASH_DO) {
+            hash_ref_do = new Hash_REF_DO(readBytes(in, hashLength));
+        }
+        return new REF_DO(aid_ref_do, hash_ref_do);
+    }
+
+    private static void writeChannelAccess(DataOutputStream out, ChannelAccess channelAccess)
+            throws IOException {
+        out.writeByte(channelAccess.getAccess().ordinal());
+        out.writeUTF(channelAccess.getReason() == null ? "" : channelAccess.getReason());
+        out.writeByte(channelAccess.getApduAccess().ordinal());
+        out.writeByte(channelAccess.getNFCEventAccess().ordinal());
+        out.writeBoolean(channelAccess.isUseApduFilter());
+
+        ApduFilter[] filters = channelAccess.getApduFilter();
+        out.writeInt(filters == null ? NULL_VALUE : filters.length);
+        if (filters != null) {
+            for (ApduFilter filter : filters) {
+                out.write(filter.toBytes());
+            }
+        }
+    }
+
+    private static ChannelAccess readChannelAccess(DataInputStream in) throws IOException {
+        ChannelAccess channelAccess = new ChannelAccess();
+        ChannelAccess.ACCESS access = readAccess(in);
+        channelAccess.setAccess(access, in.readUTF());
+        channelAccess.setApduAccess(readAccess(in));
+        channelAccess.setNFCEventAccess(readAccess(in));
+        channelAccess.setUseApduFilter(in.readBoolean());
+
+        int count = in.readInt();
+        if (count != NULL_VALUE) {
+            if (count < 0) {
+                throw new IOException("invalid number of APDU filters");
+            }
+            ApduFilter[] filters = new ApduFilter[count];
+            for (int i = 0; i < count; i++) {
+                byte[] apduAndMask = new byte[ApduFilter.LENGTH];
+                in.readFully(apduAndMask);
+                filters[i] = new ApduFilter(apduAndMask);
+            }
+            channelAccess.setApduFilter(filters);
+        }
+        return channelAccess;
+    }
+
+    private static ChannelAccess.ACCESS readAccess(DataInputStream in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        ChannelAccess.ACCESS[] values = ChannelAccess.ACCESS.values();
+        if (ordinal >= values.length) {
+            throw new IOException("invalid access value " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data == null ? NULL_VALUE : data.length);
+        if (data != null) {
+            out.write(data);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        return readBytes(in, in.readInt());
+    }
+
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+        if (length == NULL_VALUE) {
+            return null;
+        }
+        if (length < 0 || length > 0xFFFF) {
+            throw new IOException("invalid length " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    private static void close(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    public synchronized void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Access rule store: " + (mDirectory == null ? "disabled" : "enabled")
+                + ", " + mHits + " hits, " + mMisses + " misses");
+        writer.println();
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.service.security;
+
+/**
+ * Immutable, compiled form of a set of APDU filters. Each filter header and
+ * mask is packed into an int, so that a command header matches a filter if
+ * (header & mask) == filter header, as in CommandApdu.compareHeaders().
+ *
+ * Large filter sets are additionally indexed by INS byte: filters whose mask
+ * covers the whole INS byte are only checked for commands with that INS.
+ * The CLA byte is not indexed since filters usually mask the channel bits.
+ */
+public final class ApduFilterMatcher {
+
+    /**
+     * Filter sets smaller than this are matched linearly.
+     */
+    private static final int INDEX_THRESHOLD = 16;
+
+    private static final int INS_MASK = 0x00FF0000;
+
+    private final int[] mHeaders;
+
+    private final int[] mMasks;
+
+    /* Filters by INS, null if the set is matched linearly */
+    private final int[][] mInsIndex;
+
+    /* Filters which do not fully specify INS, only used with the index */
+    private final int[] mWildcardIns;
+
+    public ApduFilterMatcher(ApduFilter[] filters) {
+        int count = filters == null ? 0 : filters.length;
+        mHeaders = new int[count];
+        mMasks = new int[count];
+        for (int i = 0; i < count; i++) {
+            mHeaders[i] = pack(filters[i].getApdu(), 0);
+            mMasks[i] = pack(filters[i].getMask(), 0);
+        }
+
+        if (count < INDEX_THRESHOLD) {
+            mInsIndex = null;
+            mWildcardIns = null;
+            return;
+        }
+
+        int[] insCount = new int[256];
+        int wildcardCount = 0;
+        for (int i = 0; i < count; i++) {
+            if ((mMasks[i] & INS_MASK) == INS_MASK) {
+                insCount[(mHeaders[i] >>> 16) & 0xFF]++;
+            } else {
+                wildcardCount++;
+            }
+        }
+        mInsIndex = new int[256][];
+        for (int ins = 0; ins < 256; ins++) {
+            if (insCount[ins] > 0) {
+                mInsIndex[ins] = new int[insCount[ins]];
+                insCount[ins] = 0;
+            }
+        }
+        mWildcardIns = new int[wildcardCount];
+        wildcardCount = 0;
+        for (int i = 0; i < count; i++) {
+            if ((mMasks[i] & INS_MASK) == INS_MASK) {
+                int ins = (mHeaders[i] >>> 16) & 0xFF;
+                mInsIndex[ins][insCount[ins]++] = i;
+            } else {
+                mWildcardIns[wildcardCount++] = i;
+            }
+        }
+    }
+
+    /**
+     * @return the number of filters of this matcher.
+     */
+    public int size() {
+        return mHeaders.length;
+    }
+
+    /**
+     * Checks whether the header of a command matches one of the filters.
+     *
+     * @param command the command APDU.
+     *
+     * @return true if at least one filter matches.
+     */
+    public boolean matches(byte[] command) {
+        if (command == null || command.length < 4) {
+            return false;
+        }
+        return matches(pack(command, 0));
+    }
+
+    /**
+     * Checks whether a command header matches one of the filters.
+     *
+     * @param header CLA, INS, P1 and P2 of the command as big endian integer.
+     *
+     * @return true if at least one filter matches.
+     */
+    public boolean matches(int header) {
+        if (mInsIndex == null) {
+            for (int i = 0; i < mHeaders.length; i++) {
+                if ((header & mMasks[i]) == mHeaders[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int[] candidates = mInsIndex[(header >>> 16) & 0xFF];
+        if (candidates != null) {
+            for (int i : candidates) {
+                if ((header & mMasks[i]) == mHeaders[i]) {
+                    return true;
+                }
+            }
+        }
+        for (int i : mWildcardIns) {
+            if ((header & mMasks[i]) == mHeaders[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int pack(byte[] header, int offset) {
+        return ((header[offset] & 0xFF) << 24)
+                | ((header[offset + 1] & 0xFF) << 16)
+                | ((header[offset + 2] & 0xFF) << 8)
+                | (header[offset + 3] & 0xFF);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.service.security;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.pm.Signature;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.security.cert.CertificateException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.simalliance.openmobileapi.service.SmartcardService;
+
+/**
+ * Process wide cache of the certificate hashes of device applications. It is
+ * shared by the Access Control Enforcers of all terminals, so that the
+ * signatures of a package are only decoded and hashed once per installed
+ * version of the package.
+ */
+public final class AppCertHashCache {
+
+    private static final AppCertHashCache sInstance = new AppCertHashCache();
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+
+    private BroadcastReceiver mPackageReceiver = null;
+
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    private static class Entry {
+        final long mVersion;
+        final byte[][] mHashes;
+
+        Entry(long version, byte[][] hashes) {
+            mVersion = version;
+            mHashes = hashes;
+        }
+    }
+
+    private AppCertHashCache() {
+    }
+
+    public static AppCertHashCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Registers for package updates and removals to drop the corresponding
+     * entries.
+     *
+     * @param context The context used to register the receiver.
+     */
+    public synchronized void registerPackageReceiver(Context context) {
+        if (mPackageReceiver != null) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        mPackageReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                if (intent.getData() != null) {
+                    invalidate(intent.getData().getSchemeSpecificPart());
+                }
+            }
+        };
+        context.registerReceiver(mPackageReceiver, filter);
+    }
+
+    public synchronized void unregisterPackageReceiver(Context context) {
+        if (mPackageReceiver != null) {
+            context.unregisterReceiver(mPackageReceiver);
+            mPackageReceiver = null;
+        }
+        mEntries.clear();
+    }
+
+    /**
+     * Returns the SHA-1 hashes of the certificates the given package is
+     * signed with. The returned arrays are shared and must not be modified.
+     *
+     * @param packageManager The package manager to be used.
+     * @param packageName The name of the package.
+     *
+     * @return The certificate hashes of the package.
+     *
+     * @throws CertificateException if a certificate cannot be decoded.
+     * @throws SecurityException if the package does not exist.
+     */
+    public byte[][] getAppCertHashes(PackageManager packageManager, String packageName)
+            throws CertificateException, SecurityException {
+
+        if (packageName == null || packageName.length() == 0) {
+            throw new SecurityException("Package Name not defined");
+        }
+
+        // The update time identifies the installed version and thus its
+        // signing certificates, and it is retrieved without the signatures.
+        long version = getPackageInfo(packageManager, packageName, 0).lastUpdateTime;
+        synchronized (this) {
+            Entry entry = mEntries.get(packageName);
+            if (entry != null && entry.mVersion == version) {
+                mHits++;
+                return entry.mHashes;
+            }
+            mMisses++;
+        }
+
+        PackageInfo packageInfo = getPackageInfo(
+                packageManager, packageName, PackageManager.GET_SIGNATURES);
+        if (packageInfo.signatures == null) {
+            throw new SecurityException("Application certificates are invalid or do not exist.");
+        }
+        byte[][] hashes = new byte[packageInfo.signatures.length][];
+        int i = 0;
+        for (Signature signature : packageInfo.signatures) {
+            hashes[i++] = AccessControlEnforcer.getAppCertHash(
+                    AccessControlEnforcer.decodeCertificate(signature.toByteArray()));
+        }
+
+        synchronized (this) {
+            mEntries.put(packageName, new Entry(packageInfo.lastUpdateTime, hashes));
+        }
+        return hashes;
+    }
+
+    /**
+     * Drops the certificate hashes of the given package.
+     *
+     * @param packageName The name of the package.
+     */
+    public synchronized void invalidate(String packageName) {
+        if (mEntries.remove(packageName) != null) {
+            Log.v(SmartcardService.LOG_TAG, "Certificate hashes of " + packageName
+                    + " removed from cache");
+        }
+    }
+
+    private static PackageInfo getPackageInfo(PackageManager packageManager,
+            String packageName, int flags) {
+        PackageInfo packageInfo;
+        try {
+            packageInfo = packageManager.getPackageInfo(packageName, flags);
+        } catch (NameNotFoundException ne) {
+            throw new SecurityException("Package does not exist");
+        }
+        if (packageInfo == null) {
+            throw new SecurityException("Package does not exist");
+        }
+        return packageInfo;
+    }
+
+    public synchronized void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "Certificate hash cache: " + mEntries.size()
+                + " packages, " + mHits + " hits, " + mMisses + " misses");
+        writer.println();
+    }
+}
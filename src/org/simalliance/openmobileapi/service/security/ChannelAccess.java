@@ -35,18 +35,23 @@ public class ChannelAccess {
 
     protected int mCallingPid = 0;
 
+    protected int mCallingUid = 0;
+
     protected String mReason = "no access by default";
     
     protected ACCESS mNFCEventAccess = ACCESS.UNDEFINED;
 
     protected ApduFilter[] mApduFilter = null;
 
+    protected volatile ApduFilterMatcher mApduFilterMatcher = null;
+
     public ChannelAccess clone(){
     	ChannelAccess ca = new ChannelAccess();
     	ca.setAccess(this.mAccess, this.mReason);
     	ca.setPackageName( this.mPackageName);
     	ca.setApduAccess(this.mApduAccess);
     	ca.setCallingPid(this.mCallingPid);
+    	ca.setCallingUid(this.mCallingUid);
     	ca.setNFCEventAccess(this.mNFCEventAccess);
     	ca.setUseApduFilter(this.mUseApduFilter);
     	if( this.mApduFilter != null ) {
@@ -104,6 +109,14 @@ public class ChannelAccess {
         return mCallingPid;
     }
 
+    public void setCallingUid(int callingUid) {
+        this.mCallingUid = callingUid;
+    }
+
+    public int getCallingUid() {
+        return mCallingUid;
+    }
+
     public String getReason() {
         return mReason;
     }
@@ -113,6 +126,20 @@ public class ChannelAccess {
 
     public void setApduFilter(ApduFilter[] accessConditions) {
         mApduFilter = accessConditions;
+        mApduFilterMatcher = null;
+    }
+
+    /**
+     * Returns the APDU filters compiled for matching. The filters are compiled
+     * on first use after they have been set.
+     */
+    public ApduFilterMatcher getApduFilterMatcher() {
+        ApduFilterMatcher matcher = mApduFilterMatcher;
+        if (matcher == null) {
+            matcher = new ApduFilterMatcher(mApduFilter);
+            mApduFilterMatcher = matcher;
+        }
+        return matcher;
     }
     public ACCESS getNFCEventAccess() {
         return mNFCEventAccess;
@@ -145,6 +172,8 @@ public class ChannelAccess {
     	}
     	sb.append(", mCallingPid=");
     	sb.append(mCallingPid);
+    	sb.append(", mCallingUid=");
+    	sb.append(mCallingUid);
     	sb.append(", mReason=");
     	sb.append(mReason);
     	sb.append(", mNFCEventAllowed=");
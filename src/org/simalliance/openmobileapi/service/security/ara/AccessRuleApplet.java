@@ -18,8 +18,12 @@
 package org.simalliance.openmobileapi.service.security.ara;
 
 
+import android.util.Log;
+
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.simalliance.openmobileapi.service.Channel;
 import org.simalliance.openmobileapi.service.Terminal;
@@ -28,6 +32,7 @@ import org.simalliance.openmobileapi.service.security.CommandApdu;
 import org.simalliance.openmobileapi.service.security.ResponseApdu;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.BerTlv;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.ParserException;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_ALL_AR_DO_Decoder;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_DO_Factory;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_RefreshTag_DO;
 
@@ -44,7 +49,21 @@ public class AccessRuleApplet {
     final private static CommandApdu mGetNext = new CommandApdu(0x80, 0xCA, 0xFF, 0x60, _MAX_LEN);
 
     final private static CommandApdu mGetRefreshTag = new CommandApdu(0x80, 0xCA, 0xDF, 0x20, _MAX_LEN );
-    
+
+    final private static int _MAX_SHORT_LEN = 0x100; // largest Le of a short APDU, encoded as 0x00.
+
+    // Le that is known to work for reading rules, per terminal and ATR.
+    final private static Map<String, Integer> sMaxLen = new HashMap<>();
+
+    private final String mMaxLenKey;
+
+    // Le used for reading rules.
+    private int mMaxLen;
+
+    private boolean mMaxLenConfirmed;
+
+    // true if a response block longer than _MAX_LEN was received by the last read.
+    private boolean mLongBlockReceived;
 
     private Terminal mTerminal = null;
 
@@ -53,89 +72,94 @@ public class AccessRuleApplet {
     public AccessRuleApplet(Terminal terminal, Channel channel) {
         mTerminal = terminal;
         mChannel = channel;
+
+        mMaxLenKey = terminal.getName() + "/" + Util.bytesToString(terminal.getAtr());
+        synchronized (sMaxLen) {
+            Integer maxLen = sMaxLen.get(mMaxLenKey);
+            mMaxLenConfirmed = maxLen != null;
+            mMaxLen = mMaxLenConfirmed ? maxLen : _MAX_SHORT_LEN;
+        }
     }
 
-    public byte[] readSpecificAccessRule( byte[] aid_ref_do ) throws SecurityException {
+    public byte[] readSpecificAccessRule( byte[] ref_do ) throws SecurityException {
 
-        if( aid_ref_do == null ){
+        if( ref_do == null ){
             throw new SecurityException("GET DATA (specific): Reference data object must not be null.");
         }
 
-        ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        int overallLen;
-
         // send GET DATA (specific)
         CommandApdu apdu = mGetSpecific.clone();
-        apdu.setData(aid_ref_do);
-        ResponseApdu response;
-        try {
-            response = send(apdu);
-        } catch (Exception e) {
-            throw new SecurityException("Error sending APDU");
-        }
+        apdu.setData(ref_do);
+        return toByteArray(readData(apdu, "GET DATA (specific)", null));
+    }
 
-        // OK
-        if( response.isStatus( 0x9000 ) ) {
-            // check if more data has to be fetched
-            BerTlv tempTlv;
-            try {
-                tempTlv = BerTlv.decode(response.getData(), 0, false);
-            } catch (ParserException e) {
-                throw new SecurityException("GET DATA (specific) not successfull. Tlv encoding wrong.");
-            }
+    public byte[] readAllAccessRules() throws SecurityException {
 
-            // the first data block contain the length of the TLV + Tag bytes + length bytes.
-            overallLen = tempTlv.getValueLength() + tempTlv.getValueIndex();
-            try {
-                stream.write(response.getData());
-            } catch (IOException e) {
-                throw new SecurityException("GET DATA (specific) IO problem. " + e.getMessage() );
-            }
+        // send GET DATA (all)
+        return toByteArray(readData(mGetAll.clone(), "GET DATA (all)", null));
+    }
 
-            int le;
-            // send subsequent GET DATA (next) commands
-            while( stream.size() < overallLen ){
-                le = overallLen - stream.size();
-                if( le > _MAX_LEN ){
-                    le = _MAX_LEN;
-                }
-                // send GET DATA (next)
-                apdu = mGetNext.clone();
-                apdu.setLe(le);
-                try {
-                    response = send(apdu);
-                } catch (Exception e) {
-                    throw new SecurityException("Error sending APDU");
-                }
+    /**
+     * Reads all access rules and decodes them while they are received.
+     *
+     * @param decoder the decoder the response is fed to.
+     *
+     * @return false if the ARA-M has no rules.
+     */
+    public boolean readAllAccessRules(Response_ALL_AR_DO_Decoder decoder) throws SecurityException {
+
+        // send GET DATA (all)
+        return readData(mGetAll.clone(), "GET DATA (all)", decoder) != null;
+    }
 
-                // OK
-                if( response.isStatus( 0x9000 ) ){
-                    try {
-                        stream.write(response.getData());
-                    } catch (IOException e) {
-                        throw new SecurityException("GET DATA (next) IO problem. " + e.getMessage() );
-                    }
-                } else {
-                    throw new SecurityException( "GET DATA (next) not successfull, . SW1SW2=" + response.getSW1SW2());
-                }
-            }
+    private static byte[] toByteArray(ByteArrayOutputStream stream) {
+        return stream == null ? null : stream.toByteArray();
+    }
 
-            return stream.toByteArray();
-            // referenced data not found
-        } else if( response.isStatus( 0x6A88 )){
-            return null;
-        } else {
-            throw new SecurityException("GET DATA (specific) not successfull. SW1SW2=" + response.getSW1SW2());
+    /**
+     * Reads a data object with the given GET DATA command and subsequent
+     * GET DATA (next) commands. The largest Le is tried first; if that
+     * fails the read is repeated with the defensive Le. The largest Le is
+     * remembered for this terminal and ATR only once a response block longer
+     * than the defensive Le has been received with it.
+     *
+     * @param decoder decoder the data is fed to, or null to collect the data
+     *        in the returned stream.
+     *
+     * @return the data, or null if the referenced data was not found.
+     */
+    private ByteArrayOutputStream readData(CommandApdu command, String name,
+            Response_ALL_AR_DO_Decoder decoder) throws SecurityException {
+        int maxLen = mMaxLen;
+        mLongBlockReceived = false;
+        try {
+            ByteArrayOutputStream data = readData(command, name, maxLen, decoder);
+            if( !mMaxLenConfirmed && mLongBlockReceived ){
+                setMaxLen(maxLen);
+            }
+            return data;
+        } catch (SecurityException e) {
+            if( mMaxLenConfirmed || maxLen <= _MAX_LEN ){
+                throw e;
+            }
+            Log.d(ACCESS_RULE_APPLET_TAG, name + " with Le=" + maxLen + " failed, using Le="
+                    + _MAX_LEN + ": " + e.getMessage());
+            setMaxLen(_MAX_LEN);
+            if( decoder != null ){
+                decoder.reset();
+            }
+            return readData(command, name, _MAX_LEN, decoder);
         }
     }
 
-    public byte[] readAllAccessRules() throws SecurityException {
+    private ByteArrayOutputStream readData(CommandApdu command, String name, int maxLen,
+            Response_ALL_AR_DO_Decoder decoder) throws SecurityException {
 
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
         int overallLen;
 
-        // send GET DATA (specific)
-        CommandApdu apdu = mGetAll.clone();
+        CommandApdu apdu = command.clone();
+        apdu.setLe(maxLen & 0xFF);
         ResponseApdu response;
         try {
             response = send(apdu);
@@ -151,30 +175,27 @@ public class AccessRuleApplet {
             try {
                 tempTlv = BerTlv.decode(response.getData(), 0, false);
             } catch (ParserException e) {
-                throw new SecurityException("GET DATA (all) not successfull. Tlv encoding wrong.");
+                throw new SecurityException(name + " not successfull. Tlv encoding wrong.");
             }
 
             // the first data block contain the length of the TLV + Tag bytes + length bytes.
             overallLen = tempTlv.getValueLength() + tempTlv.getValueIndex();
 
-
-            try {
-                stream.write(response.getData());
-            } catch (IOException e) {
-                throw new SecurityException("GET DATA (all) IO problem. " + e.getMessage() );
-            }
+            write(stream, decoder, response.getData(), name);
+            int received = response.getData().length;
+            mLongBlockReceived |= received > _MAX_LEN;
 
             int le;
             // send subsequent GET DATA (next) commands
-            while( stream.size() < overallLen ){
-                le = overallLen - stream.size();
+            while( received < overallLen ){
+                le = overallLen - received;
 
-                if( le > _MAX_LEN ){
-                    le = _MAX_LEN;
+                if( le > maxLen ){
+                    le = maxLen;
                 }
-                // send GET DATA (next)
+                // send GET DATA (next), Le=256 is encoded as 0x00
                 apdu = mGetNext.clone();
-                apdu.setLe(le);
+                apdu.setLe(le & 0xFF);
 
                 try {
                     response = send(apdu);
@@ -183,22 +204,52 @@ public class AccessRuleApplet {
                 }
                 // OK
                 if( response.isStatus( 0x9000 ) ) {
-                    try {
-                        stream.write(response.getData());
-                    } catch (IOException e) {
-                        throw new SecurityException("GET DATA (next) IO problem. " + e.getMessage() );
-                    }
+                    write(stream, decoder, response.getData(), "GET DATA (next)");
+                    received += response.getData().length;
+                    mLongBlockReceived |= response.getData().length > _MAX_LEN;
                 } else {
                     throw new SecurityException( "GET DATA (next) not successfull, . SW1SW2=" + response.getSW1SW2());
                 }
             }
 
-            return stream.toByteArray();
+            if( decoder != null ){
+                try {
+                    decoder.finish();
+                } catch (ParserException e) {
+                    throw new SecurityException("Parsing Data Object Exception: " + e.getMessage());
+                }
+            }
+            return stream;
             // referenced data not found
         } else if( response.isStatus( 0x6A88 )){
             return null;
         } else {
-            throw new SecurityException("GET DATA (all) not successfull. SW1SW2=" + response.getSW1SW2());
+            throw new SecurityException(name + " not successfull. SW1SW2=" + response.getSW1SW2());
+        }
+    }
+
+    private static void write(ByteArrayOutputStream stream, Response_ALL_AR_DO_Decoder decoder,
+            byte[] data, String name) throws SecurityException {
+        if( decoder != null ){
+            try {
+                decoder.feed(data);
+            } catch (ParserException e) {
+                throw new SecurityException("Parsing Data Object Exception: " + e.getMessage());
+            }
+        } else {
+            try {
+                stream.write(data);
+            } catch (IOException e) {
+                throw new SecurityException(name + " IO problem. " + e.getMessage() );
+            }
+        }
+    }
+
+    private void setMaxLen(int maxLen) {
+        mMaxLen = maxLen;
+        mMaxLenConfirmed = true;
+        synchronized (sMaxLen) {
+            sMaxLen.put(mMaxLenKey, maxLen);
         }
     }
 
@@ -18,7 +18,11 @@ package org.simalliance.openmobileapi.service.security.ara;
 
 import android.util.Log;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.MissingResourceException;
 
@@ -30,10 +34,15 @@ import org.simalliance.openmobileapi.service.Terminal;
 import org.simalliance.openmobileapi.service.security.AccessControlEnforcer;
 import org.simalliance.openmobileapi.service.security.AccessRuleCache;
 import org.simalliance.openmobileapi.service.security.ChannelAccess;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.AID_REF_DO;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.BerTlv;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.DO_Exception;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Hash_REF_DO;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.ParserException;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.REF_AR_DO;
-import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_ALL_AR_DO;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.REF_DO;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_ALL_AR_DO_Decoder;
+import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_AR_DO;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Response_DO_Factory;
 
 public class AraController {
@@ -47,6 +56,26 @@ public class AraController {
     
     private boolean mNoSuchElement = false;
 
+    // Callback of the channels opened to the ARA-M, kept for on demand reads.
+    private volatile ISmartcardServiceCallback mCallback = null;
+
+    // Maximum number of rules fetched on demand that are kept.
+    private static final int SPECIFIC_RULE_CACHE_SIZE = 128;
+
+    // Rules fetched on demand with GET DATA (specific), in access order.
+    // A null value means that the ARA-M has no rule for the reference.
+    // Guarded by itself, the ARA-M is accessed without holding the lock.
+    private final Map<REF_DO, ChannelAccess> mSpecificRules =
+            new LinkedHashMap<REF_DO, ChannelAccess>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<REF_DO, ChannelAccess> eldest) {
+                    return size() > SPECIFIC_RULE_CACHE_SIZE;
+                }
+            };
+
+    // Incremented when mSpecificRules is cleared, guarded by mSpecificRules.
+    private int mSpecificRulesGeneration;
+
     private String ACCESS_CONTROL_ENFORCER_TAG = "ACE ARA";
 
     public static final byte[] ARA_M_AID = new byte[] {
@@ -73,6 +102,7 @@ public class AraController {
             boolean loadAtStartup,
             ISmartcardServiceCallback callback) {
 
+        mCallback = callback;
         Channel channel;
         try {
             channel = this.handleOpenChannel(callback);
@@ -95,17 +125,32 @@ public class AraController {
                 return false;
             }
             Log.d(ACCESS_CONTROL_ENFORCER_TAG, "Refresh tag has changed.");
+            // rules read with this refresh tag before a restart are still valid.
+            if( loadAtStartup && mMaster.restoreAccessRules(tag)) {
+                return true;
+            }
             // set new refresh tag and empty cache.
             mAccessRuleCache.setRefreshTag(tag);
             mAccessRuleCache.clearCache();
+            synchronized (mSpecificRules) {
+                mSpecificRules.clear();
+                mSpecificRulesGeneration++;
+            }
 
             if( loadAtStartup ) {
                 // Read content from ARA
                 Log.d(ACCESS_CONTROL_ENFORCER_TAG, "Read ARs from ARA");
                 this.readAllAccessRules();
             }
+            // make the new rules visible at once
+            mAccessRuleCache.publish();
+            if( loadAtStartup ) {
+                mMaster.storeAccessRules();
+            }
         } catch (Exception e) {
             Log.d(ACCESS_CONTROL_ENFORCER_TAG, "ARA error: " + e.getLocalizedMessage());
+            // do not keep the new refresh tag with incomplete rules
+            mAccessRuleCache.reset();
             throw new SecurityException(e.getLocalizedMessage());
         } finally {
             closeChannel(channel);
@@ -113,6 +158,111 @@ public class AraController {
         return true;
     }
 
+    /**
+     * Fetches the access rule for an application from the ARA-M with
+     * GET DATA (specific). The references are queried in the order of the
+     * GPAC search rules, walking the certificate chain for each AID
+     * reference, until a rule is found: the AID with the certificate
+     * hashes, the AID with an empty hash, all SE applications with the
+     * certificate hashes, all SE applications with an empty hash. Fetched
+     * rules, and references without a rule, are kept until the refresh tag
+     * changes.
+     *
+     * @param aid the AID of the SE application.
+     * @param appCertHashes the certificate hashes of the device application.
+     *
+     * @return the access rule or null if there is no rule.
+     */
+    public ChannelAccess getAccessRule(byte[] aid, byte[][] appCertHashes)
+            throws SecurityException {
+
+        int generation;
+        synchronized (mSpecificRules) {
+            generation = mSpecificRulesGeneration;
+        }
+        Channel channel = null;
+        AccessRuleApplet applet = null;
+        try {
+            for (REF_DO ref_do : getSearchReferences(aid, appCertHashes)) {
+                ChannelAccess channelAccess;
+                boolean cached;
+                synchronized (mSpecificRules) {
+                    cached = mSpecificRules.containsKey(ref_do);
+                    channelAccess = mSpecificRules.get(ref_do);
+                }
+                if (!cached) {
+                    if (applet == null) {
+                        channel = this.handleOpenChannel(mCallback);
+                        if (channel == null) {
+                            throw new SecurityException("could not open channel");
+                        }
+                        applet = new AccessRuleApplet(mTerminal, channel);
+                    }
+                    channelAccess = readSpecificAccessRule(applet, ref_do);
+                    synchronized (mSpecificRules) {
+                        // do not keep rules read before a refresh
+                        if (generation == mSpecificRulesGeneration) {
+                            mSpecificRules.put(ref_do, channelAccess);
+                        }
+                    }
+                }
+                if (channelAccess != null) {
+                    return channelAccess;
+                }
+            }
+            return null;
+        } finally {
+            closeChannel(channel);
+        }
+    }
+
+    /**
+     * Returns the references that are queried for an application, in the
+     * order of the search rules of AccessRuleCache.
+     */
+    private static List<REF_DO> getSearchReferences(byte[] aid, byte[][] appCertHashes) {
+        List<REF_DO> references = new ArrayList<REF_DO>(2 * appCertHashes.length + 2);
+        AID_REF_DO[] aid_ref_dos = new AID_REF_DO[] {
+                // Search Rule A and B ( Certificate(s) or <AllDeviceApplications>; AID )
+                AccessRuleCache.getAidRefDo(aid == null ? null : aid.clone()),
+                // Search Rule C and D ( Certificate(s) or <AllDeviceApplications>; <AllSEApplications> )
+                new AID_REF_DO(AID_REF_DO._TAG)
+        };
+        for (AID_REF_DO aid_ref_do : aid_ref_dos) {
+            for (byte[] appCertHash : appCertHashes) {
+                references.add(new REF_DO(aid_ref_do, new Hash_REF_DO(appCertHash.clone())));
+            }
+            references.add(new REF_DO(aid_ref_do, new Hash_REF_DO()));
+        }
+        return references;
+    }
+
+    private ChannelAccess readSpecificAccessRule(AccessRuleApplet applet, REF_DO ref_do)
+            throws SecurityException {
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            ref_do.build(stream);
+            byte[] data = applet.readSpecificAccessRule(stream.toByteArray());
+            // referenced data not found -> no rule.
+            if( data == null ) {
+                return null;
+            }
+
+            BerTlv tlv = Response_DO_Factory.createDO( data );
+            if( !(tlv instanceof Response_AR_DO) ){
+                throw new SecurityException( "Applet returned invalid or wrong data object!");
+            }
+            if( ((Response_AR_DO)tlv).getArDo() == null ){
+                return null; // no rule
+            }
+            return AccessRuleCache.mapArDo2ChannelAccess(((Response_AR_DO)tlv).getArDo());
+        } catch (DO_Exception e) {
+            throw new SecurityException("Building Data Object Exception: " + e.getMessage());
+        } catch (ParserException e) {
+            throw new SecurityException("Parsing Data Object Exception: " + e.getMessage());
+        }
+    }
+
     private Channel handleOpenChannel( ISmartcardServiceCallback callback ){
         Channel channel;
         String reason;
@@ -158,34 +308,30 @@ public class AraController {
      * @throws SecurityException
      */
     private boolean readAllAccessRules() throws SecurityException {
-        try {
-            byte[] data = mApplet.readAllAccessRules();
-            // no data returned, but no exception
-            // -> no rule.
-            if( data == null ) {
-                return false;
-            }
+        final int[] count = new int[1];
+        // rules are put into the cache while the response is received.
+        Response_ALL_AR_DO_Decoder decoder = new Response_ALL_AR_DO_Decoder(
+                new Response_ALL_AR_DO_Decoder.Listener() {
+                    @Override
+                    public void onStart() {
+                        // drop rules of an aborted read
+                        mAccessRuleCache.clearCache();
+                        count[0] = 0;
+                    }
 
-            BerTlv tlv = Response_DO_Factory.createDO( data );
-            if( tlv == null ) {
-                throw new SecurityException("No valid data object found" );
-            } if( tlv instanceof Response_ALL_AR_DO ){
-
-                ArrayList<REF_AR_DO> array = ((Response_ALL_AR_DO)tlv).getRefArDos();
-                if( array == null || array.size() == 0 ){
-                    return false; // no rules
-                } else {
-                    for (REF_AR_DO ref_ar_do : array) {
-                        this.mAccessRuleCache.putWithMerge(ref_ar_do.getRefDo(), ref_ar_do.getArDo());
+                    @Override
+                    public void onRefArDo(REF_AR_DO ref_ar_do) {
+                        mAccessRuleCache.putWithMerge(ref_ar_do.getRefDo(), ref_ar_do.getArDo());
+                        count[0]++;
                     }
-                }
-            } else {
-                throw new SecurityException( "Applet returned invalid or wrong data object!");
-            }
-        } catch (ParserException e) {
-            throw new SecurityException("Parsing Data Object Exception: " + e.getMessage());
+                });
+
+        // no data returned, but no exception
+        // -> no rule.
+        if( !mApplet.readAllAccessRules(decoder) ) {
+            return false;
         }
-        return true;
+        return count[0] > 0;
     }
     
     private Channel openChannel(Terminal terminal, byte[] aid, ISmartcardServiceCallback callback) throws Exception {
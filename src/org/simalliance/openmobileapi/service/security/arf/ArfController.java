@@ -17,6 +17,8 @@ package org.simalliance.openmobileapi.service.security.arf;
 
 import android.util.Log;
 
+import java.io.PrintWriter;
+
 import org.simalliance.openmobileapi.service.ISmartcardServiceCallback;
 import org.simalliance.openmobileapi.service.SmartcardService;
 import org.simalliance.openmobileapi.service.Terminal;
@@ -58,4 +60,11 @@ public class ArfController {
 	public AccessRuleCache getAccessRuleCache(){
 		return mAccessRuleCache;
 	}
+
+	public void dump(PrintWriter writer, String prefix) {
+		PKCS15Handler pkcs15Handler = mPkcs15Handler;
+		if( pkcs15Handler != null ) {
+			pkcs15Handler.dump(writer, prefix);
+		}
+	}
 }
@@ -27,9 +27,9 @@ import org.simalliance.openmobileapi.service.security.arf.PKCS15.PKCS15Exception
 public class DERParser {
 
     public static final String TAG = "AccessControl";
-    // DER parameters
+    // DER parameters, the parser works on the view [mDERIndex..mDERSize[ of the buffer
     private byte[] mDERBuffer;
-    private short mDERSize,mDERIndex,mTLVDataSize=0;
+    private int mDERSize,mDERIndex,mTLVDataSize=0;
 
     /**
      * Returns "Base 128" encoded integer
@@ -48,7 +48,7 @@ public class DERParser {
      * Returns size of the TLV encoded value
      * @return Size of the TLV
      */
-    private short getTLVSize()
+    private int getTLVSize()
     throws PKCS15Exception {
         int size,TLVSize=0;
 
@@ -64,9 +64,9 @@ public class DERParser {
         }} 
 
         // Check if the buffer contains enough data
-        if ((mDERIndex+TLVSize)>mDERSize)
+        if ((TLVSize<0)||(TLVSize>mDERSize-mDERIndex))
             throw new PKCS15Exception("[Parser] Not enough data");
-        return (short)TLVSize;
+        return TLVSize;
     }
 
     /**
@@ -86,15 +86,28 @@ public class DERParser {
      * @param buffer file data
      */
     public DERParser(byte[] buffer)
+    throws PKCS15Exception {
+        this(buffer,0,(buffer==null) ? 0 : buffer.length);
+    }
+
+    /**
+     * Constructor, the data is parsed in place
+     * @param buffer file data
+     * @param offset Start of the data to parse
+     * @param length Length of the data to parse
+     */
+    public DERParser(byte[] buffer,int offset,int length)
     throws PKCS15Exception {
         mDERBuffer=buffer; 
-        mDERIndex=0; mDERSize=0;
+        mDERIndex=offset; mDERSize=offset;
         if (mDERBuffer==null) return;
-        mDERSize=(short)mDERBuffer.length; 
-        mTLVDataSize=mDERSize;
+        if ((offset<0)||(length<0)||(length>mDERBuffer.length-offset))
+            throw new PKCS15Exception("[Parser] Index out of bound");
+        mDERSize=offset+length; 
+        mTLVDataSize=length;
 
         // Remove padding
-        if (mDERSize==0) return;
+        if (length==0) return;
         if (mDERBuffer[mDERIndex]==ASN1.TAG_Padding) {
             mTLVDataSize=0; 
             while(++mDERIndex<mDERSize) {
@@ -134,7 +147,7 @@ public class DERParser {
      * @param type Type required
      * @return Length of TLV data structure
      */
-    public short parseTLV(byte type)
+    public int parseTLV(byte type)
     throws PKCS15Exception {
         if (getTLVType()==type) {
             mTLVDataSize=getTLVSize();
@@ -160,12 +173,50 @@ public class DERParser {
         return data;
     }
 
+    /**
+     * Returns a parser for the data of the current TLV structure.
+     * The data is not copied.
+     * @return Parser of current TLV structure data
+     */
+    public DERParser getTLVParser()
+    throws PKCS15Exception {
+        DERParser parser=new DERParser(mDERBuffer,mDERIndex,mTLVDataSize);
+        mDERIndex+=mTLVDataSize;
+        return parser;
+    }
+
+    /**
+     * Returns the first byte of the data of the current TLV structure
+     * @return First byte of current TLV structure data
+     */
+    public byte getTLVByte()
+    throws PKCS15Exception {
+        if (mTLVDataSize==0)
+            throw new PKCS15Exception("[Parser] Data length is null");
+        byte value=mDERBuffer[mDERIndex];
+        mDERIndex+=mTLVDataSize;
+        return value;
+    }
+
+    /**
+     * Compares the data of the current TLV structure without copying it
+     * @param data Expected data
+     * @return True if the data is equal; False otherwise
+     */
+    public boolean matchTLVData(byte[] data) {
+        boolean match=(data!=null)&&(data.length==mTLVDataSize);
+        for (int i=0;match&&(i<mTLVDataSize);i++)
+            match=(mDERBuffer[mDERIndex+i]==data[i]);
+        mDERIndex+=mTLVDataSize;
+        return match;
+    }
+
     /**
      * Takes snaptshot of the current context
      * @return Saved context
      */
-    public short[] saveContext() {
-        short[] context=new short[2];
+    public int[] saveContext() {
+        int[] context=new int[2];
         context[0]=mDERIndex; context[1]=mTLVDataSize;
         return context;
     }
@@ -174,11 +225,12 @@ public class DERParser {
      * Restores a context from a snapshot previously saved
      * @param context Context snapshot
      */
-    public void restoreContext(short[] context)
+    public void restoreContext(int[] context)
     throws PKCS15Exception {
         if ((context==null)||(context.length!=2))
             throw new PKCS15Exception("[Parser] Invalid context");
-        if ((context[0]<0)||(context[0]>mDERSize))
+        if ((context[0]<0)||(context[0]>mDERSize)||(context[1]<0)
+            ||(context[1]>mDERSize-context[0]))
             throw new PKCS15Exception("[Parser] Index out of bound");
         mDERIndex=context[0]; mTLVDataSize=context[1];
     }
@@ -209,6 +261,18 @@ public class DERParser {
         return oid.toString();
     }
 
+    /**
+     * Parses standardized OID and compares it with an encoded OID
+     * @param oid Content octets of the expected OID
+     * @return True if the OID is equal; False otherwise
+     */
+    public boolean matchOID(byte[] oid)
+    throws PKCS15Exception {
+        if (parseTLV(ASN1.TAG_OID)==0)
+            throw new PKCS15Exception("[Parser] OID Length is null");
+        return matchTLVData(oid);
+    }
+
     /**
      * Parses PKCS#15 path attribute
      * @return Path retreived from the attribute
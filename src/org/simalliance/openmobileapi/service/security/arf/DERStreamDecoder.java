@@ -0,0 +1,169 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.service.security.arf;
+
+import java.util.Arrays;
+
+import org.simalliance.openmobileapi.service.security.arf.PKCS15.PKCS15Exception;
+
+/**
+ * Push-style decoder for PKCS#15 files which are read in several parts.
+ * Every complete top level TLV structure is handed to the listener as
+ * soon as its last byte has been received; only the incomplete structure
+ * at the end of the data received so far is buffered.
+ ***************************************************/
+public class DERStreamDecoder {
+
+    public interface Listener {
+        /**
+         * Called for every complete top level TLV structure
+         * @param DER Parser positioned at the TLV structure
+         * @return False to stop decoding; True otherwise
+         */
+        boolean onTLV(DERParser DER) throws PKCS15Exception;
+    }
+
+    private final Listener mListener;
+    // Keep the whole file data instead of the incomplete structure only
+    private final boolean mKeepData;
+
+    private byte[] mBuffer=new byte[256];
+    // Data received in mBuffer, structures before mStart have been decoded
+    private int mCount=0,mStart=0;
+    private int mTLVCount=0;
+    private boolean mPadding=false,mStopped=false;
+
+    /**
+     * Constructor
+     * @param listener Receives the TLV structures
+     * @param keepData True if getData() shall return the whole file data
+     */
+    public DERStreamDecoder(Listener listener,boolean keepData) {
+        mListener=listener;
+        mKeepData=keepData;
+    }
+
+    /**
+     * Announces the size of the file so that the buffer fits for keeping it
+     * @param size File size
+     */
+    public void setExpectedSize(int size) {
+        if (mKeepData && (size>mBuffer.length))
+            mBuffer=Arrays.copyOf(mBuffer,size);
+    }
+
+    /**
+     * Determines if the listener stopped decoding
+     * @return True if no more data is needed; False otherwise
+     */
+    public boolean isStopped() {
+        return mStopped;
+    }
+
+    /**
+     * Returns the number of TLV structures handed to the listener
+     */
+    public int getTLVCount() {
+        return mTLVCount;
+    }
+
+    /**
+     * Returns the data received so far, only valid if it is kept
+     * @return File data
+     */
+    public byte[] getData() {
+        if (!mKeepData) return null;
+        return (mCount==mBuffer.length) ? mBuffer : Arrays.copyOf(mBuffer,mCount);
+    }
+
+    /**
+     * Decodes the next part of the file
+     * @param data Buffer containing the part
+     * @param offset Start of the part in the buffer
+     * @param length Length of the part
+     */
+    public void feed(byte[] data,int offset,int length)
+    throws PKCS15Exception {
+        if (mStopped) return;
+        append(data,offset,length);
+
+        int size;
+        while (!mPadding && !mStopped && ((size=getTLVLength(mStart))>0)) {
+            DERParser DER=new DERParser(mBuffer,mStart,size);
+            mStart+=size;
+            mTLVCount++;
+            if (!mListener.onTLV(DER))
+                mStopped=true;
+        }
+        // Padding has to last up to the end of the file
+        if (mPadding) {
+            for (;mStart<mCount;mStart++) {
+                if (mBuffer[mStart]!=ASN1.TAG_Padding)
+                    throw new PKCS15Exception("[Parser] Incorrect file format");
+            }
+        }
+        if (!mKeepData && (mStart>0)) {
+            // keep the incomplete structure only
+            System.arraycopy(mBuffer,mStart,mBuffer,0,mCount-mStart);
+            mCount-=mStart;
+            mStart=0;
+        }
+    }
+
+    /**
+     * Checks that the whole file has been decoded
+     */
+    public void finish()
+    throws PKCS15Exception {
+        if (!mStopped && !mPadding && (mStart<mCount))
+            throw new PKCS15Exception("[Parser] Not enough data");
+    }
+
+    private void append(byte[] data,int offset,int length) {
+        if (mCount+length>mBuffer.length)
+            mBuffer=Arrays.copyOf(mBuffer,Math.max(mBuffer.length*2,mCount+length));
+        System.arraycopy(data,offset,mBuffer,mCount,length);
+        mCount+=length;
+    }
+
+    /**
+     * Returns the length of the complete TLV structure at the given index
+     * @param index Start of the TLV structure
+     * @return Length of tag, size and data; 0 if it is not complete yet
+     */
+    private int getTLVLength(int index)
+    throws PKCS15Exception {
+        if (index>=mCount) return 0;
+        if (mBuffer[index]==ASN1.TAG_Padding) {
+            mPadding=true;
+            return 0;
+        }
+        int pos=index+1;
+        if (pos>=mCount) return 0;
+        int size=mBuffer[pos++] & 0xff;
+        if (size>=128) {
+            int count=size-128;
+            if (count>3)
+                throw new PKCS15Exception("[Parser] Cannot retreive size");
+            if (pos+count>mCount) return 0;
+            for (size=0;count>0;count--)
+                size=(size<<8)+(mBuffer[pos++] & 0xff);
+        }
+        if (pos+size>mCount) return 0;
+        return pos+size-index;
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Arrays;
 import org.simalliance.openmobileapi.internal.Util;
 import org.simalliance.openmobileapi.service.security.arf.ASN1;
 import org.simalliance.openmobileapi.service.security.arf.DERParser;
+import org.simalliance.openmobileapi.service.security.arf.DERStreamDecoder;
 import org.simalliance.openmobileapi.service.security.arf.SecureElement;
 import org.simalliance.openmobileapi.service.security.arf.SecureElementException;
 
@@ -21,6 +22,8 @@ public class EF {
 
     public static final int APDU_SUCCESS = 0x9000;
     private static final int BUFFER_LEN = 253;
+    // Largest Le of a short APDU, encoded as 0x00
+    private static final int MAX_BUFFER_LEN = 256;
     
     // 2012-04-13
     private static final short EF = 0x04;
@@ -47,6 +50,9 @@ public class EF {
     public String getFilePath(){
     	return mFilePath;
     }
+    public int getFileSize(){
+    	return mFileSize;
+    }
     
     private void decodeFileProperties(byte[] data ) 
 		throws SecureElementException
@@ -220,32 +226,131 @@ public class EF {
 	throws SecureElementException {
 	    if (mFileSize==0) return null;
 	    if (nbBytes==-1) nbBytes=mFileSize;
+	    byte[] result=new byte[nbBytes];
+	    try {
+	        readBinary(offset,nbBytes,result,null);
+	    } catch (PKCS15Exception e) {
+	        // only thrown by a decoder
+	        throw new SecureElementException(e.getMessage());
+	    }
+	    return result;
+	}
+
+	/**
+	 * Reads the whole current selected file (INS 0xB0) and hands each part
+	 * to the decoder as soon as it has been received
+	 * @param decoder Decoder of the file data
+	 */
+	public void readBinary(DERStreamDecoder decoder)
+	throws SecureElementException,PKCS15Exception {
+	    if (mFileSize!=0) {
+	        decoder.setExpectedSize(mFileSize);
+	        readBinary(0,mFileSize,null,decoder);
+	    }
+	    decoder.finish();
+	}
+
+	/**
+	 * Reads data from the current selected file into the result array
+	 * or the decoder
+	 */
+	private void readBinary(int offset,int nbBytes,byte[] result,DERStreamDecoder decoder)
+	throws SecureElementException,PKCS15Exception {
 	    if (mFileType != EF) 
 	        throw new SecureElementException("Incorrect file type");
 	    if (mFileStructure != TRANSPARENT ) 
 	        throw new SecureElementException("Incorrect file structure");
 	
 	    int length,pos=0;
-	    byte[] result=new byte[nbBytes];
 	    byte[] cmd={ 0x00,(byte)0xB0,0x00,0x00,0x00 };
+	    // use the largest buffer size known to work with this SE
+	    int bufferLen = mSEHandle.getReadBinaryLen();
+	    if (bufferLen == 0) bufferLen = MAX_BUFFER_LEN;
+
+	    // over SIM IO all parts are read with one call to the terminal
+	    if ((mSEHandle.getSeInterface() == SecureElement.SIM_IO) && (nbBytes>bufferLen)
+	        && readBinaryBatch(offset,nbBytes,bufferLen,result,decoder))
+	        return;
 	    
-	    while (nbBytes!=0) {
-	        if (nbBytes<BUFFER_LEN) 
+	    while ((nbBytes!=0) && ((decoder==null) || !decoder.isStopped())) {
+	        if (nbBytes<bufferLen) 
 	        	length=nbBytes;
 	        else 
-	        	length=BUFFER_LEN; // Set to max buffer size
+	        	length=bufferLen; // Set to max buffer size
 	
 	        Log.d(TAG,"ReadBinary ["+offset+".."+length+"b]");
 	        
 	        cmd[2]=(byte)(offset>>8); 
 	        cmd[3]=(byte)offset; 
-	        cmd[4]=(byte)length;
-	        System.arraycopy(mSEHandle.exchangeAPDU(this, cmd),0,result,pos,length);
+	        cmd[4]=(byte)length; // 256 is encoded as 0x00
+	        byte[] data;
+	        try {
+	            data=mSEHandle.exchangeAPDU(this, cmd);
+	            if (data.length<length+2)
+	                throw new SecureElementException("ReadBinary returned " + (data.length-2) + "b");
+	        } catch (SecureElementException e) {
+	            if (length<=BUFFER_LEN || mSEHandle.getReadBinaryLen()!=0)
+	                throw e;
+	            // the large buffer size is not supported, fall back to the default one
+	            Log.d(TAG,"ReadBinary with "+length+"b failed, using "+BUFFER_LEN+"b");
+	            mSEHandle.setReadBinaryLen(BUFFER_LEN);
+	            bufferLen=BUFFER_LEN;
+	            continue;
+	        }
+	        if (length>BUFFER_LEN && mSEHandle.getReadBinaryLen()==0)
+	            mSEHandle.setReadBinaryLen(MAX_BUFFER_LEN);
+	        if (decoder!=null)
+	            decoder.feed(data,0,length);
+	        else
+	            System.arraycopy(data,0,result,pos,length);
 	        nbBytes-=length; offset+=length; pos+=length;
 	    }  
-	    return result;
 	}
 	
+	/**
+	 * Reads all parts of the data with one exchange
+	 * @param result Receives the data
+	 * @return <code>false</code> if the data has to be read part by part
+	 */
+	private boolean readBinaryBatch(int offset,int nbBytes,int bufferLen,byte[] result,
+	    DERStreamDecoder decoder) throws PKCS15Exception {
+	    int count=(nbBytes+bufferLen-1)/bufferLen;
+	    int[] fileIds=new int[count];
+	    byte[][] cmds=new byte[count][];
+	    for (int i=0;i<count;i++) {
+	        int pos=offset+i*bufferLen;
+	        int length=Math.min(bufferLen,nbBytes-i*bufferLen);
+	        fileIds[i]=mFileID;
+	        cmds[i]=new byte[]{ 0x00,(byte)0xB0,(byte)(pos>>8),(byte)pos,(byte)length };
+	    }
+	    Log.d(TAG,"ReadBinary ["+offset+".."+nbBytes+"b] in "+count+" parts");
+
+	    byte[][] responses;
+	    try {
+	        responses=mSEHandle.exchangeAPDUs(this,fileIds,cmds);
+	    } catch (SecureElementException e) {
+	        Log.d(TAG,"ReadBinary batch failed: "+e.getMessage());
+	        return false;
+	    }
+	    for (int i=0;i<count;i++) {
+	        int length=Math.min(bufferLen,nbBytes-i*bufferLen);
+	        if (responses[i].length<length+2) {
+	            Log.d(TAG,"ReadBinary batch returned "+(responses[i].length-2)+"b");
+	            return false;
+	        }
+	    }
+	    if (bufferLen>BUFFER_LEN && mSEHandle.getReadBinaryLen()==0)
+	        mSEHandle.setReadBinaryLen(MAX_BUFFER_LEN);
+	    for (int i=0;i<count;i++) {
+	        int length=Math.min(bufferLen,nbBytes-i*bufferLen);
+	        if (decoder!=null)
+	            decoder.feed(responses[i],0,length);
+	        else
+	            System.arraycopy(responses[i],0,result,i*bufferLen,length);
+	    }
+	    return true;
+	}
+
 	/**
 	 * Reads a record from the current selected file (INS 0xB2)
 	 * @param record Record ID [0..n]
@@ -269,6 +374,34 @@ public class EF {
 	    return Arrays.copyOf(mSEHandle.exchangeAPDU(this, cmd),mFileRecordSize);
 	}
 
+	/**
+	 * Reads all records from the current selected file with one exchange
+	 * @return Data of the records [1..n];
+	 *             <code>null</code> if the terminal cannot read them with one exchange
+	 */
+	public byte[][] readRecords()
+	throws SecureElementException {
+	    // Check the type of current selected file
+	    if (mFileType != EF)
+	        throw new SecureElementException("Incorrect file type");
+	    if (mFileStructure != LINEAR_FIXED)
+	        throw new SecureElementException("Incorrect file structure");
+
+	    Log.d(TAG,"ReadRecords ["+mFileNbRecords+"*"+mFileRecordSize+"b]");
+	    int[] fileIds=new int[mFileNbRecords];
+	    byte[][] cmds=new byte[mFileNbRecords][];
+	    for (int i=0;i<mFileNbRecords;i++) {
+	        fileIds[i]=mFileID;
+	        cmds[i]=new byte[]{ 0x00,(byte)0xB2,(byte)(i+1),0x04,(byte)mFileRecordSize };
+	    }
+	    byte[][] records=mSEHandle.exchangeAPDUs(this,fileIds,cmds,false);
+	    if (records==null) return null;
+	    for (int i=0;i<records.length;i++) {
+	        records[i]=Arrays.copyOf(records[i],mFileRecordSize);
+	    }
+	    return records;
+	}
+
     /**
      * Returns the number of records in the current selected file
      * @return Number of records [0..n]
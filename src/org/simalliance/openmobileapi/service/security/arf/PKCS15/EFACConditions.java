@@ -22,14 +22,17 @@ package org.simalliance.openmobileapi.service.security.arf.PKCS15;
 
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
 import org.simalliance.openmobileapi.service.security.ApduFilter;
 import org.simalliance.openmobileapi.service.security.ChannelAccess;
 import org.simalliance.openmobileapi.service.security.arf.ASN1;
 import org.simalliance.openmobileapi.service.security.arf.DERParser;
+import org.simalliance.openmobileapi.service.security.arf.DERStreamDecoder;
 import org.simalliance.openmobileapi.service.security.arf.SecureElement;
-import org.simalliance.openmobileapi.internal.Util;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.AID_REF_DO;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.Hash_REF_DO;
 
@@ -44,7 +47,22 @@ public class EFACConditions extends EF {
     private AID_REF_DO mAid_Ref_Do=null;
     
     private byte[] mData = null;
-    
+
+    // Access rules decoded from mData
+    private List<Rule> mRules = new ArrayList<Rule>();
+
+    /**
+     * Access rule of the file which does not depend on the AID
+     */
+    static final class Rule {
+        final Hash_REF_DO mHash_Ref_Do;
+        final ChannelAccess mChannelAccess;
+
+        Rule(Hash_REF_DO hash_ref_do, ChannelAccess channelAccess) {
+            mHash_Ref_Do = hash_ref_do;
+            mChannelAccess = channelAccess;
+        }
+    }
     
     /**
      * Constructor
@@ -57,6 +75,9 @@ public class EFACConditions extends EF {
     	 mAid_Ref_Do=Aid_Ref_Do;
     }
     
+    // Hash of the last condition, also used by a condition without content
+    private Hash_REF_DO mHash_Ref_Do=null;
+
     /**
      * Decodes EF_ACConditions file
      * @param buffer ASN.1 data
@@ -64,20 +85,31 @@ public class EFACConditions extends EF {
     private void decodeDER(byte[] buffer)
     	throws PKCS15Exception 
 	{
-
-        byte[] certificateHash=null;
         DERParser DER=new DERParser(buffer);
-        
-        // the default channelAccess will deny every access.
-        ChannelAccess channelAccess = new ChannelAccess();
-        Hash_REF_DO hash_ref_do = new Hash_REF_DO();
+        mHash_Ref_Do=new Hash_REF_DO();
 
         // empty condition file
         if (DER.isEndofBuffer()) { 
-        	mSEHandle.putAccessRule(mAid_Ref_Do, hash_ref_do, channelAccess);
+        	// the default channelAccess will deny every access.
+        	putAccessRule(mHash_Ref_Do, new ChannelAccess());
         	return;
         }
-        
+        while(!DER.isEndofBuffer()) {
+            decodeCondition(DER);
+        }
+    }
+
+    /**
+     * Decodes a condition of the EF_ACConditions file
+     * @param DER Parser positioned at the condition
+     */
+    private void decodeCondition(DERParser DER)
+    	throws PKCS15Exception 
+	{
+        byte[] certificateHash=null;
+        ChannelAccess channelAccess;
+        Hash_REF_DO hash_ref_do = mHash_Ref_Do;
+
         //----
         // 2012-04-16
         /*
@@ -104,29 +136,28 @@ public class EFACConditions extends EF {
 			   	nfcPermission [0] NFCPermission
 			}
          */
-    	while(!DER.isEndofBuffer()) {
-        	
-        	// if a hash value was found then access is allowed 
-        	// even if NO more access rule is given.
-        	// missing APDU Permission will always allow APDU access
-        	// missing NFC Permission will always allow NFC event.
-        	// See GPAC Chapter 7.1.7
-        	// See Examples in Annex C of GPAC
-            channelAccess = new ChannelAccess();
-        	channelAccess.setAccess(ChannelAccess.ACCESS.ALLOWED, "");
-        	channelAccess.setApduAccess(ChannelAccess.ACCESS.ALLOWED);
-        	channelAccess.setNFCEventAccess(ChannelAccess.ACCESS.ALLOWED);
-        	channelAccess.setUseApduFilter(false);
-
-        	if ( DER.parseTLV(ASN1.TAG_Sequence) > 0 ) {				// Check for 0x30
-        		DERParser derRule = new DERParser( DER.getTLVData());
-        		short[] context = null;
-        		try {
-
-        			context = derRule.saveContext();
-        			derRule.parseTLV(ASN1.TAG_OctetString); 				// Check for 0x04 which is used for cert hash, throws exception if not found
-        			certificateHash=derRule.getTLVData();
-                
+    	
+    	// if a hash value was found then access is allowed 
+    	// even if NO more access rule is given.
+    	// missing APDU Permission will always allow APDU access
+    	// missing NFC Permission will always allow NFC event.
+    	// See GPAC Chapter 7.1.7
+    	// See Examples in Annex C of GPAC
+        channelAccess = new ChannelAccess();
+    	channelAccess.setAccess(ChannelAccess.ACCESS.ALLOWED, "");
+    	channelAccess.setApduAccess(ChannelAccess.ACCESS.ALLOWED);
+    	channelAccess.setNFCEventAccess(ChannelAccess.ACCESS.ALLOWED);
+    	channelAccess.setUseApduFilter(false);
+
+    	if ( DER.parseTLV(ASN1.TAG_Sequence) > 0 ) {				// Check for 0x30
+    		DERParser derRule = DER.getTLVParser();
+    		int[] context = null;
+    		try {
+
+    			context = derRule.saveContext();
+    			derRule.parseTLV(ASN1.TAG_OctetString); 				// Check for 0x04 which is used for cert hash, throws exception if not found
+    			certificateHash=derRule.getTLVData();
+            
 	                if (certificateHash.length!=Hash_REF_DO._SHA1_LEN &&
 	                		certificateHash.length!=0) {
 	                	// other hash than SHA-1 hash values are not supported.
@@ -134,45 +165,45 @@ public class EFACConditions extends EF {
 	                } else {
 	                	hash_ref_do =new Hash_REF_DO(certificateHash);
 	                }
-        		} catch ( PKCS15Exception e ) {
-
-        			// cert hash is OPTIONAL so TAG_OctetString might be missing
-        			// this means this access condiction applies to any device application.
-        			hash_ref_do =new Hash_REF_DO();
-
-        			// if a context could be stored, restore it so that we can continue parsing...
-        			if( context != null ){
-
-        				derRule.restoreContext(context);
-        			}
-        		}
-                
-                // 2012-04-16
-                // parse optional Access Rule.
-                if( !derRule.isEndofBuffer() ) {
-                	
+    		} catch ( PKCS15Exception e ) {
+
+    			// cert hash is OPTIONAL so TAG_OctetString might be missing
+    			// this means this access condiction applies to any device application.
+    			hash_ref_do =new Hash_REF_DO();
+
+    			// if a context could be stored, restore it so that we can continue parsing...
+    			if( context != null ){
+
+    				derRule.restoreContext(context);
+    			}
+    		}
+            
+            // 2012-04-16
+            // parse optional Access Rule.
+            if( !derRule.isEndofBuffer() ) {
+            	
 	            	if( derRule.parseTLV() == (byte)0xA0 ) {
 
 
-	            		DERParser derAccessRules = new DERParser(derRule.getTLVData());
+	            		DERParser derAccessRules = derRule.getTLVParser();
 	                	
 	                	while(!derAccessRules.isEndofBuffer()) {
 	                    	switch( derAccessRules.parseTLV() ){
 	                    		// APDU Access Rule
 		                    	case (byte)0xA0: 
 
-		                    		DERParser derApduRule = new DERParser( derAccessRules.getTLVData());
+		                    		DERParser derApduRule = derAccessRules.getTLVParser();
 		                    		byte tagApduAccessRule = derApduRule.parseTLV();
 
 		                    		
 		                    		if( tagApduAccessRule == (byte)0x80 ) { // APDU Permission  (primitive)
 
 	                					channelAccess.setApduAccess(
-		                							derApduRule.getTLVData()[0] == 0x01 ? ChannelAccess.ACCESS.ALLOWED : ChannelAccess.ACCESS.DENIED);
+		                							derApduRule.getTLVByte() == 0x01 ? ChannelAccess.ACCESS.ALLOWED : ChannelAccess.ACCESS.DENIED);
 		                				
 		                    		} else if( tagApduAccessRule == (byte)0xA1 ) { // APDU Filter (constructed)
 
-		                    			DERParser derApduFilter = new DERParser( derApduRule.getTLVData() );
+		                    			DERParser derApduFilter = derApduRule.getTLVParser();
 		                				byte tag = derApduFilter.parseTLV();
 		                				
 		                				if( tag == ASN1.TAG_OctetString ) { 
@@ -200,12 +231,12 @@ public class EFACConditions extends EF {
 	                    		// NFC Access Rule
 		                    	case (byte)0xA1: 
 
-		                    		DERParser derNfc = new DERParser(derAccessRules.getTLVData());
+		                    		DERParser derNfc = derAccessRules.getTLVParser();
 		                    	
 		                    		if( derNfc.parseTLV() == (byte)0x80 ) { // NFC Permission (primitive)
 
 		                    			channelAccess.setNFCEventAccess(
-		                    					derNfc.getTLVData()[0] == (byte)0x01 ? ChannelAccess.ACCESS.ALLOWED : ChannelAccess.ACCESS.DENIED);
+		                    					derNfc.getTLVByte() == (byte)0x01 ? ChannelAccess.ACCESS.ALLOWED : ChannelAccess.ACCESS.DENIED);
 		                    		} else {
 		                        		throw new PKCS15Exception("Invalid element found!");
 		                    		}
@@ -217,17 +248,26 @@ public class EFACConditions extends EF {
 	                } else {
 	                	// no explicit access rule given.
 	                }
-                }
-            } else {
-            	// coding 30 00 -> empty hash value given (all applications)
             }
-            //----
+        } else {
+        	// coding 30 00 -> empty hash value given (all applications)
+        }
+        //----
 
-        	mSEHandle.putAccessRule(mAid_Ref_Do, hash_ref_do, channelAccess);
-        } ;
+    	putAccessRule(hash_ref_do, channelAccess);
+        mHash_Ref_Do = hash_ref_do;
     }
 
 
+    /**
+     * Adds an access rule for the AID and keeps it for reuse
+     */
+    private void putAccessRule(Hash_REF_DO hash_ref_do, ChannelAccess channelAccess) {
+        // the rule cache merges into the access it holds, keep a copy
+        mRules.add(new Rule(hash_ref_do, channelAccess.clone()));
+        mSEHandle.putAccessRule(mAid_Ref_Do, hash_ref_do, channelAccess);
+    }
+
     /**
      * Stores a restricted list of certificate hashes
      * @param path Path of the "EF_ACConditions" file
@@ -236,8 +276,20 @@ public class EFACConditions extends EF {
         try {
             Log.v(TAG,"Reading and analysing EF_ACConditions...");
             if (selectFile(path) == APDU_SUCCESS) {
-            	mData = readBinary(0,Util.END);
-                decodeDER(mData);
+                // conditions are decoded while the file is read
+                mHash_Ref_Do=new Hash_REF_DO();
+                DERStreamDecoder decoder=new DERStreamDecoder(new DERStreamDecoder.Listener() {
+                    public boolean onTLV(DERParser DER) throws PKCS15Exception {
+                        decodeCondition(DER);
+                        return true;
+                    }
+                },true);
+                readBinary(decoder);
+                // empty condition file: the default channelAccess will deny every access.
+                if (decoder.getTLVCount()==0)
+                    putAccessRule(mHash_Ref_Do, new ChannelAccess());
+                if (getFileSize()!=0)
+                    mData = decoder.getData();
             } else {
             	Log.e(TAG,"EF_ACConditions not found!");
             }
@@ -266,9 +318,48 @@ public class EFACConditions extends EF {
         } 
     }
 
+    /**
+     * Stores access rules decoded before from the same EF_ACConditions data
+     * @param data Data of the "EF_ACConditions" file
+     * @param rules Rules decoded from the data
+     */
+    public void addRestrictedHashesFromRules(byte[] data, List<Rule> rules) {
+        Log.v(TAG,"Reusing decoded EF_ACConditions data...");
+        mData = data;
+        for (Rule rule : rules) {
+            putAccessRule(rule.mHash_Ref_Do, rule.mChannelAccess.clone());
+        }
+    }
+
+    /**
+     * Checks if the EF_ACConditions file still contains the given data.
+     * The whole file is read and compared, only decoding is saved.
+     * @param path Path of the "EF_ACConditions" file
+     * @param data Data read from the file before
+     * @return true if the file content is unchanged
+     */
+    public boolean compareContent(byte[] path, byte[] data) {
+        try {
+            if (selectFile(path) != APDU_SUCCESS || getFileSize() != data.length) {
+                return false;
+            }
+            if (data.length == 0) {
+                return true;
+            }
+            return Arrays.equals(readBinary(0, data.length), data);
+        } catch (Exception e) {
+            Log.e( TAG, "Exception: " + e.getMessage());
+            return false;
+        }
+    }
+
 	public byte[] getData() {
 		return mData;
 	}
 
+	List<Rule> getRules() {
+		return mRules;
+	}
+
 }
 
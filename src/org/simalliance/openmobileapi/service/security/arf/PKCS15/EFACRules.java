@@ -22,12 +22,19 @@ package org.simalliance.openmobileapi.service.security.arf.PKCS15;
 
 import android.util.Log;
 
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.simalliance.openmobileapi.internal.Util;
 import org.simalliance.openmobileapi.service.security.arf.ASN1;
 import org.simalliance.openmobileapi.service.security.arf.DERParser;
+import org.simalliance.openmobileapi.service.security.arf.DERStreamDecoder;
 import org.simalliance.openmobileapi.service.security.arf.SecureElement;
 import org.simalliance.openmobileapi.service.security.arf.SecureElementException;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.AID_REF_DO;
@@ -41,64 +48,144 @@ public class EFACRules extends EF {
     // AID used to store rules for default application
     public static final byte[] DEFAULT_APP = new byte[0];
     
-    protected Map<String, byte[]> mAcConditionDataCache = new HashMap<String, byte[]>();
-    
+    // EF_ACConditions files read before, kept across refreshes.
+    // Only the decoding is cached: a cached file is still read completely
+    // once per refresh to check that it has not been changed.
+    protected Map<String, ACConditionsData> mAcConditionDataCache = new HashMap<String, ACConditionsData>();
+    // paths of the EF_ACConditions files checked during the current refresh
+    private Set<String> mCheckedPaths = new HashSet<String>();
+
+    // statistics of the last refresh
+    private int mBytesRead = 0;
+    private int mBytesSaved = 0;
+    private int mFilesReused = 0;
+    private int mFilesRead = 0;
+    private long mTotalFilesReused = 0;
+    private long mTotalBytesSaved = 0;
 
     /**
-     * Decodes EF_ACRules file
-     * @param buffer ASN.1 data
+     * Entry of the EF_ACRules file
      */
-    private void decodeDER(byte[] buffer)
+    private static final class Rule {
+        final AID_REF_DO mAid_Ref_Do;
+        final byte[] mPath;
+
+        Rule(AID_REF_DO aid_ref_do, byte[] path) {
+            mAid_Ref_Do = aid_ref_do;
+            mPath = path;
+        }
+    }
+
+    /**
+     * Content of an EF_ACConditions file and the rules decoded from it
+     */
+    protected static final class ACConditionsData {
+        final byte[] mData;
+        final int mHash;
+        final List<EFACConditions.Rule> mRules;
+
+        ACConditionsData(byte[] data, List<EFACConditions.Rule> rules) {
+            mData = data;
+            mHash = Arrays.hashCode(data);
+            mRules = rules;
+        }
+
+        boolean hasContent(byte[] data, int hash) {
+            return mHash == hash && Arrays.equals(mData, data);
+        }
+    }
+
+    /**
+     * Decodes an entry of the EF_ACRules file
+     * @param DER Parser positioned at the entry
+     * @param rules Receives the AID and the path of the "EF_ACConditions" file
+     */
+    private void decodeDER(DERParser DER,List<Rule> rules)
     	throws PKCS15Exception 
     {
         byte[] AID=null;
-        DERParser DER=new DERParser(buffer);
 
         // mapping to GPAC data objects
         int tag = 0;
         
-        while(!DER.isEndofBuffer()) {
-            DER.parseTLV(ASN1.TAG_Sequence);
-            switch(DER.parseTLV()) {
-            case (byte)0xA0: // Restricted AID
-                DER.parseTLV(ASN1.TAG_OctetString);
-                AID=DER.getTLVData();
-                tag = AID_REF_DO._TAG;
-                break;
-            case (byte)0x81: // Rules for default Application
-                AID=null; 
-            	tag = AID_REF_DO._TAG_DEFAULT_APPLICATION;	
-            	break;
-            case (byte)0x82: // Rules for default case
-                AID=DEFAULT_APP; 
-            	tag = AID_REF_DO._TAG;
-            	break;
-            default:
-                throw new PKCS15Exception("[Parser] Unexpected ACRules entry");
-            } 
-            byte[] path = DER.parsePathAttributes();
-            
-            // 2012-09-04
-            // optimization of reading EF ACCondition 
-            if( path != null  ){
-                String pathString = Util.bytesToString(path);
-                EFACConditions temp = new EFACConditions(mSEHandle,new AID_REF_DO(tag, AID ));
-                // check if EF was already read before
-                if( this.mAcConditionDataCache.containsKey(pathString )){
-                	// yes, then reuse data
-                	temp.addRestrictedHashesFromData(this.mAcConditionDataCache.get(pathString));
-                } else {
-                	// no, read EF and add to rules cache
-                    temp.addRestrictedHashes(path);
-                    if( temp.getData() != null ){
-                    	// if data are read the put it into cache.
-                    	this.mAcConditionDataCache.put(pathString, temp.getData());
-                    }
-                }
+        DER.parseTLV(ASN1.TAG_Sequence);
+        switch(DER.parseTLV()) {
+        case (byte)0xA0: // Restricted AID
+            DER.parseTLV(ASN1.TAG_OctetString);
+            AID=DER.getTLVData();
+            tag = AID_REF_DO._TAG;
+            break;
+        case (byte)0x81: // Rules for default Application
+            AID=null; 
+        	tag = AID_REF_DO._TAG_DEFAULT_APPLICATION;	
+        	break;
+        case (byte)0x82: // Rules for default case
+            AID=DEFAULT_APP; 
+        	tag = AID_REF_DO._TAG;
+        	break;
+        default:
+            throw new PKCS15Exception("[Parser] Unexpected ACRules entry");
+        } 
+        byte[] path = DER.parsePathAttributes();
+        if( path != null  ){
+            rules.add(new Rule(new AID_REF_DO(tag, AID), path));
+        }
+    }
+
+    /**
+     * Reads the EF_ACConditions file of an EF_ACRules entry
+     * @param aid_ref_do AID the conditions apply to
+     * @param path Path of the "EF_ACConditions" file
+     */
+    private void readConditions(AID_REF_DO aid_ref_do, byte[] path) {
+        // 2012-09-04
+        // optimization of reading EF ACCondition 
+        String pathString = Util.bytesToString(path);
+        EFACConditions temp = new EFACConditions(mSEHandle,aid_ref_do);
+        ACConditionsData cached = mAcConditionDataCache.get(pathString);
+        // check once per refresh if a file read before has been changed
+        if( cached != null && mCheckedPaths.add(pathString) ){
+            if( !temp.compareContent(path, cached.mData) ){
+                mAcConditionDataCache.remove(pathString);
+                cached = null;
+            } else {
+                mBytesRead += cached.mData.length;
+                // the rules are not decoded again
+                mBytesSaved += cached.mData.length;
+                mFilesReused++;
+            }
+        }
+        if( cached != null ){
+        	// yes, then reuse decoded rules
+        	temp.addRestrictedHashesFromRules(cached.mData, cached.mRules);
+        } else {
+        	// no, read EF and add to rules cache
+            mCheckedPaths.add(pathString);
+            temp.addRestrictedHashes(path);
+            if( temp.getData() != null ){
+            	// if data are read the put it into cache.
+                mBytesRead += temp.getData().length;
+                mFilesRead++;
+            	mAcConditionDataCache.put(pathString, newConditionsData(temp));
             }
         }
     }
 
+    /**
+     * Creates the cache entry of an EF_ACConditions file which has been read,
+     * sharing the decoded rules of another file with the same content.
+     */
+    private ACConditionsData newConditionsData(EFACConditions conditions) {
+        byte[] data = conditions.getData();
+        int hash = Arrays.hashCode(data);
+        for (ACConditionsData cached : mAcConditionDataCache.values()) {
+            if (cached.hasContent(data, hash)) {
+                return cached;
+            }
+        }
+        return new ACConditionsData(data, conditions.getRules());
+    }
+
     /**
      * Constructor
      * @param secureElement SE on which ISO7816 commands are applied
@@ -116,15 +203,43 @@ public class EFACRules extends EF {
     	
         Log.v(TAG,"Analysing EF_ACRules...");
         
-        // clear EF AC Condition data cache.
-        mAcConditionDataCache.clear();
+        // EF AC Condition data is kept, files are checked again when referenced.
+        mCheckedPaths.clear();
+        mBytesRead = 0;
+        mBytesSaved = 0;
+        mFilesReused = 0;
+        mFilesRead = 0;
         
         if ( selectFile(path)!= APDU_SUCCESS)
             throw new PKCS15Exception("EF_ACRules not found!!");
 
-        try { 
-        	decodeDER( readBinary(0,Util.END));
-        } catch(PKCS15Exception e) {
-            throw e;
-    }}
+        // entries are decoded while the file is read, the EF_ACConditions
+        // files are read afterwards as they have to be selected.
+        final List<Rule> rules = new ArrayList<Rule>();
+        readBinary(new DERStreamDecoder(new DERStreamDecoder.Listener() {
+            public boolean onTLV(DERParser DER) throws PKCS15Exception {
+                decodeDER(DER, rules);
+                return true;
+            }
+        },false));
+        for (Rule rule : rules) {
+            readConditions(rule.mAid_Ref_Do, rule.mPath);
+        }
+        // forget files which are not referenced anymore.
+        mAcConditionDataCache.keySet().retainAll(mCheckedPaths);
+        mTotalFilesReused += mFilesReused;
+        mTotalBytesSaved += mBytesSaved;
+        Log.v(TAG,"EF_ACConditions: " + mFilesReused + " files reused, " + mFilesRead
+                + " files decoded, " + mBytesRead + " bytes read, "
+                + mBytesSaved + " bytes not decoded again");
+    }
+
+    public void dump(PrintWriter writer, String prefix) {
+        writer.println(prefix + "EF_ACConditions cache: " + mAcConditionDataCache.size() + " files");
+        writer.println(prefix + "  last refresh: " + mFilesReused + " files reused, "
+                + mFilesRead + " files decoded, " + mBytesRead + " bytes read (including the "
+                + "change check of reused files), " + mBytesSaved + " bytes not decoded again");
+        writer.println(prefix + "  total: " + mTotalFilesReused + " files reused, "
+                + mTotalBytesSaved + " bytes not decoded again");
+    }
 }
@@ -17,7 +17,6 @@
 package org.simalliance.openmobileapi.service.security.arf.PKCS15;
 
 import android.util.Log;
-import java.util.Arrays;
 
 import org.simalliance.openmobileapi.service.security.arf.ASN1;
 import org.simalliance.openmobileapi.service.security.arf.DERParser;
@@ -48,14 +47,14 @@ public class EFDIR extends EF{
         DER.parseTLV(ASN1.TAG_ApplTemplate);
         // Application Identifier
         DER.parseTLV(ASN1.TAG_ApplIdentifier);
-        if (!Arrays.equals(DER.getTLVData(),AID)) 
+        if (!DER.matchTLVData(AID)) 
             return null; // Record for another AID
 
         // Application Label or Application Path
         byte objectType=DER.parseTLV();
         if (objectType==ASN1.TAG_ApplLabel) { 
             // Application Label [Optional]
-            DER.getTLVData();
+            DER.skipTLVData();
             DER.parseTLV(ASN1.TAG_ApplPath);
         } else if (objectType!=ASN1.TAG_ApplPath) 
                      throw new PKCS15Exception("[Parser] Application Tag expected");
@@ -85,6 +84,17 @@ public class EFDIR extends EF{
             throw new PKCS15Exception("EF_DIR not found!!");
 
         byte[] data,ODFPath=null;
+        byte[][] records;
+        // read all records with one call if the terminal supports it,
+        // otherwise stop at the first matching record.
+        if (mSEHandle.getSeInterface()==SecureElement.SIM_IO
+                && (records=readRecords())!=null) {
+            for (byte[] record : records) {
+                if ((ODFPath=decodeDER(record,AID))!=null)
+                    break;
+            }
+            return ODFPath;
+        }
         short index=1;
         while(index<=getFileNbRecords()) {
             data=readRecord(index++);
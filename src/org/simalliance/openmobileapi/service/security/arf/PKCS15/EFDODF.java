@@ -18,9 +18,9 @@ package org.simalliance.openmobileapi.service.security.arf.PKCS15;
 
 import org.simalliance.openmobileapi.service.security.arf.ASN1;
 import org.simalliance.openmobileapi.service.security.arf.DERParser;
+import org.simalliance.openmobileapi.service.security.arf.DERStreamDecoder;
 import org.simalliance.openmobileapi.service.security.arf.SecureElement;
 import org.simalliance.openmobileapi.service.security.arf.SecureElementException;
-import org.simalliance.openmobileapi.internal.Util;
 
 import android.util.Log;
 
@@ -32,44 +32,44 @@ public class EFDODF extends EF{
     public static final String TAG = "ACE ARF EF_DODF";
     // OID defined by Global Platform for the "Access Control"
     public static final String AC_OID = "1.2.840.114283.200.1.1";
+    // Content octets of the DER encoded AC_OID
+    private static final byte[] AC_OID_ENCODED = {
+        0x2A,(byte)0x86,0x48,(byte)0x86,(byte)0xFC,0x6B,(byte)0x81,0x48,0x01,0x01 };
+
+    // Path to "Access Control Main" found by the decoder
+    private byte[] mACMainPath=null;
 
     /**
-     * Decodes EF_DODF file
-     * @param buffer ASN.1 data
-     * @return Path to "Access Control Main" from "Access Control" OID;
-     *             <code>null</code> otherwise
+     * Decodes an object of the EF_DODF file
+     * @param DER Parser positioned at the object
+     * @return False when the "Access Control" OID has been found; True otherwise
      */
-    private byte[] decodeDER(byte[] buffer)
+    private boolean decodeDER(DERParser DER)
     throws PKCS15Exception {
         byte objectType;
-        short[] context=null;
-        DERParser DER=new DERParser(buffer);
-
-        while(!DER.isEndofBuffer()) {
-            if (DER.parseTLV()==(byte)0xA1) { // OidDO Data Object
-                // Common Object Attributes
-                DER.parseTLV(ASN1.TAG_Sequence); 
-                DER.skipTLVData();
-                // Common Data Object Attributes
-                DER.parseTLV(ASN1.TAG_Sequence); 
-                DER.skipTLVData();
-
-                objectType=DER.parseTLV();
-                if (objectType==(byte)0xA0) { // SubClassAttributes [Optional]
-                    DER.skipTLVData();
-                    objectType=DER.parseTLV();
-                }
-                if (objectType==(byte)0xA1) { // OidDO
-                    DER.parseTLV(ASN1.TAG_Sequence);
-                    context=DER.saveContext();
-                    if (DER.parseOID().compareTo(AC_OID)!=0) {
-                        DER.restoreContext(context); 
-                        DER.skipTLVData();
-                    } else return DER.parsePathAttributes();
-                } else throw new PKCS15Exception("[Parser] OID Tag expected");
-            } else DER.skipTLVData();
-        } 
-        return null; // No "Access Control" OID found
+
+        if (DER.parseTLV()!=(byte)0xA1) // OidDO Data Object
+            return true;
+        // Common Object Attributes
+        DER.parseTLV(ASN1.TAG_Sequence); 
+        DER.skipTLVData();
+        // Common Data Object Attributes
+        DER.parseTLV(ASN1.TAG_Sequence); 
+        DER.skipTLVData();
+
+        objectType=DER.parseTLV();
+        if (objectType==(byte)0xA0) { // SubClassAttributes [Optional]
+            DER.skipTLVData();
+            objectType=DER.parseTLV();
+        }
+        if (objectType==(byte)0xA1) { // OidDO
+            DER.parseTLV(ASN1.TAG_Sequence);
+            if (DER.matchOID(AC_OID_ENCODED)) {
+                mACMainPath=DER.parsePathAttributes();
+                return false;
+            }
+        } else throw new PKCS15Exception("[Parser] OID Tag expected");
+        return true;
     }
 
 
@@ -95,7 +95,14 @@ public class EFDODF extends EF{
         if (selectFile(path)!=APDU_SUCCESS)
             throw new PKCS15Exception("EF_DODF not found!");
         
-        return decodeDER(readBinary(0,Util.END));
+        // objects are decoded while the file is read
+        mACMainPath=null;
+        readBinary(new DERStreamDecoder(new DERStreamDecoder.Listener() {
+            public boolean onTLV(DERParser DER) throws PKCS15Exception {
+                return decodeDER(DER);
+            }
+        },false));
+        return mACMainPath; // null if no "Access Control" OID found
     }
 
 }
@@ -21,9 +21,9 @@
 package org.simalliance.openmobileapi.service.security.arf.PKCS15;
 
 import org.simalliance.openmobileapi.service.security.arf.DERParser;
+import org.simalliance.openmobileapi.service.security.arf.DERStreamDecoder;
 import org.simalliance.openmobileapi.service.security.arf.SecureElement;
 import org.simalliance.openmobileapi.service.security.arf.SecureElementException;
-import org.simalliance.openmobileapi.internal.Util;
 
 import android.util.Log;
 
@@ -36,20 +36,21 @@ public class EFODF extends EF {
     // Standardized ID for EF_ODF file
     public static final byte[] EFODF_PATH = { 0x50,0x31 };
 
+    // Path to "EF_DODF" found by the decoder
+    private byte[] mDODFPath=null;
+
     /**
-     * Decodes EF_ODF file
-     * @param buffer ASN.1 data
-     * @return Path to "EF_DODF" from "DODF Tag" entry;
-     *             <code>null</code> otherwise
+     * Decodes an entry of the EF_ODF file
+     * @param DER Parser positioned at the entry
+     * @return False when the "DODF Tag" entry has been found; True otherwise
      */
-    private byte[] decodeDER(byte[] buffer)
+    private boolean decodeDER(DERParser DER)
     throws PKCS15Exception {
-        DERParser DER=new DERParser(buffer);
-        while(!DER.isEndofBuffer()) {
-            if (DER.parseTLV()==(byte)0xA7)  { // DODF
-                return DER.parsePathAttributes();
-            } else DER.skipTLVData();
-        } return null; // No "DODF Tag" entry found
+        if (DER.parseTLV()==(byte)0xA7)  { // DODF
+            mDODFPath=DER.parsePathAttributes();
+            return false;
+        }
+        return true;
     }
 
 
@@ -85,7 +86,14 @@ public class EFODF extends EF {
         if ( selectFile(path)!= APDU_SUCCESS)
             throw new PKCS15Exception("EF_ODF not found!!");
         
-        return decodeDER(readBinary(0,Util.END));
+        // entries are decoded while the file is read
+        mDODFPath=null;
+        readBinary(new DERStreamDecoder(new DERStreamDecoder.Listener() {
+            public boolean onTLV(DERParser DER) throws PKCS15Exception {
+                return decodeDER(DER);
+            }
+        },false));
+        return mDODFPath; // null if no "DODF Tag" entry found
     }
 
 }
@@ -20,6 +20,12 @@
 
 package org.simalliance.openmobileapi.service.security.arf.PKCS15;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.security.AccessControlException;
 import java.util.MissingResourceException;
 
@@ -67,6 +73,13 @@ public class PKCS15Handler {
     
     private byte[] mPkcs15Path = null;
     private byte[] mACMainPath = null;
+
+    // Container that was found: index in CONTAINER_AIDS, -1 if unknown
+    private int mContainerIndex = -1;
+    // Interface used to access the EF_DIR container, -1 if unknown
+    private short mContainerInterface = -1;
+    // Container location has been read from storage
+    private boolean mContainerRestored = false;
     
     // SIM Allowed modes:
     private boolean mSimIoAllowed;
@@ -84,16 +97,30 @@ public class PKCS15Handler {
     	} catch (Exception e) {
             mACMainObject=null;       
             mSEHandle.resetAccessRules();
+            // discover the container again next time
+            forgetContainer();
             throw e;
     	}
         // Check if rules must be updated
         if (ACRulesPath != null) {
         	Log.d(TAG, "Access Rules needs to be updated...");
+            // rules read with this refresh tag before a restart are still valid.
+            if (mSEHandle.restoreAccessRules()) {
+                return true;
+            }
             if (mACRulesObject==null) {
             	mACRulesObject=new EFACRules(mSEHandle);
             }
             mSEHandle.clearAccessRuleCache();
-        	mACRulesObject.analyseFile(ACRulesPath);
+            try {
+            	mACRulesObject.analyseFile(ACRulesPath);
+            } catch (Exception e) {
+                // do not keep the new refresh tag with incomplete rules
+                mSEHandle.resetAccessRules();
+                throw e;
+            }
+            mSEHandle.publishAccessRules();
+            mSEHandle.storeAccessRules();
         	return true;
         } else {
         	Log.d(TAG, "Refresh Tag has not been changed...");
@@ -111,9 +138,28 @@ public class PKCS15Handler {
         byte[] DODFPath=null;
         
         readAllowedSimMode();
-        
-        for(int ind=0;ind<CONTAINER_AIDS.length;ind++) {
+
+        if (!mContainerRestored) {
+            restoreContainer();
+            mContainerRestored = true;
+        }
+
+        // try the container that was found before first
+        for(int i=-1;i<CONTAINER_AIDS.length;i++) {
+            int ind = (i < 0) ? mContainerIndex : i;
+            if (ind < 0 || (i >= 0 && ind == mContainerIndex)) {
+                continue;
+            }
+            short previousInterface = mContainerInterface;
+            boolean isNewContainer = (ind != mContainerIndex);
+            if (isNewContainer) {
+                // the paths restored or found before belong to another container
+                mPkcs15Path = null;
+                mACMainPath = null;
+            }
             if (selectACRulesContainer(CONTAINER_AIDS[ind])) {
+                isNewContainer = isNewContainer || (mACMainPath == null)
+                        || (previousInterface != mContainerInterface);
 
                 byte[] acMainPath = null;
                 if( mACMainPath==null){
@@ -132,11 +178,89 @@ public class PKCS15Handler {
                 	}
                 }
                 mACMainObject=new EFACMain(mSEHandle,acMainPath);
+                mContainerIndex = ind;
+                if (isNewContainer) {
+                    storeContainer();
+                }
                 break;
             }
     	}
     }
 
+    /**
+     * Restores the location of the container found on this SE before
+     */
+    private void restoreContainer() {
+        byte[] container = mSEHandle.loadArfContainer();
+        if (container == null) {
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(container));
+            int index = in.readInt();
+            short seInterface = in.readShort();
+            byte[] pkcs15Path = readPath(in);
+            byte[] acMainPath = readPath(in);
+            if (index < 0 || index >= CONTAINER_AIDS.length || acMainPath == null) {
+                throw new IOException("invalid container " + index);
+            }
+            mContainerIndex = index;
+            mContainerInterface = seInterface;
+            mPkcs15Path = pkcs15Path;
+            mACMainPath = acMainPath;
+            Log.i(TAG, "Using stored ARF container " + index);
+        } catch (IOException e) {
+            Log.w(TAG, "Stored ARF container is invalid: " + e.getLocalizedMessage());
+            mSEHandle.storeArfContainer(null);
+        }
+    }
+
+    /**
+     * Stores the location of the current container
+     */
+    private void storeContainer() {
+        try {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(mContainerIndex);
+            out.writeShort(mContainerInterface);
+            writePath(out, mPkcs15Path);
+            writePath(out, mACMainPath);
+            out.flush();
+            mSEHandle.storeArfContainer(stream.toByteArray());
+        } catch (IOException e) {
+            Log.w(TAG, "ARF container not stored: " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Forgets the location of the container
+     */
+    private void forgetContainer() {
+        mContainerIndex = -1;
+        mContainerInterface = -1;
+        mPkcs15Path = null;
+        mACMainPath = null;
+        mSEHandle.storeArfContainer(null);
+    }
+
+    private static void writePath(DataOutputStream out, byte[] path) throws IOException {
+        out.writeShort(path == null ? -1 : path.length);
+        if (path != null) {
+            out.write(path);
+        }
+    }
+
+    private static byte[] readPath(DataInputStream in) throws IOException {
+        int length = in.readShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] path = new byte[length];
+        in.readFully(path);
+        return path;
+    }
+
     /**
      * Selects "Access Control Rules" container
      * @param AID Identification of the GPAC Applet/PKCS#15 ADF;
@@ -155,7 +279,8 @@ public class PKCS15Handler {
         	// some devices use logical channels to access filesystem directly. This is done with an empty byte array.
         	// if open logical channel does not work, last fallback is using SIM_IO (AT-CRSM).
         	// 2012-11-08
-        	if(mSimAllianceAllowed)
+        	// skip the logical channel if SIM_IO was needed for this SE before.
+        	if(mSimAllianceAllowed && (mContainerInterface != SecureElement.SIM_IO || !mSimIoAllowed))
         		mArfChannel = mSEHandle.openLogicalArfChannel(new byte[]{});
 
             if (mArfChannel != null) {
@@ -187,6 +312,9 @@ public class PKCS15Handler {
 	            	throw new PKCS15Exception("Cannot select PKCS#15 directory via EF Dir");
 	            }
         	}
+            if (isActiveContainer) {
+                mContainerInterface = mSEHandle.getSeInterface();
+            }
         }
         // if an AID is given use logical channel.
         else {
@@ -244,6 +372,13 @@ public class PKCS15Handler {
         }
     }
     
+    public void dump(PrintWriter writer, String prefix) {
+        EFACRules acRules = mACRulesObject;
+        if (acRules != null) {
+            acRules.dump(writer, prefix);
+        }
+    }
+
     /**
      * Read security allowed sim mode
      */
@@ -21,12 +21,17 @@
 package org.simalliance.openmobileapi.service.security.arf;
 
 import android.util.Log;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.MissingResourceException;
 import org.simalliance.openmobileapi.service.Channel;
 import org.simalliance.openmobileapi.service.ISmartcardServiceCallback;
 import org.simalliance.openmobileapi.service.OpenLogicalChannelResponse;
+import org.simalliance.openmobileapi.service.SimIOCommand;
+import org.simalliance.openmobileapi.service.SmartcardError;
 import org.simalliance.openmobileapi.service.Terminal;
 import org.simalliance.openmobileapi.internal.Util;
+import org.simalliance.openmobileapi.service.security.AccessRuleStore;
 import org.simalliance.openmobileapi.service.security.ChannelAccess;
 import org.simalliance.openmobileapi.service.security.arf.PKCS15.EF;
 import org.simalliance.openmobileapi.service.security.gpac.dataobjects.AID_REF_DO;
@@ -47,7 +52,15 @@ public class SecureElement {
     // Arf Controller within the SCAPI handler
     private ArfController mArfHandler=null;
     // Callback used during "Secure Element" communication
-    private final ISmartcardServiceCallback mCallback = new ISmartcardServiceCallback.Stub(){};
+    private final ISmartcardServiceCallback mCallback = new ISmartcardServiceCallback.Stub(){
+        @Override
+        public void onTransmitComplete(int token, byte[] response, SmartcardError error) {
+            // ARF channel does not use asynchronous transmissions
+        }
+    };
+
+    // Type of the stored ARF container location
+    private static final String ARF_CONTAINER_RECORD = "arf";
 
     public static final short SIM_IO = 1;
     public static final short SIM_ALLIANCE = 0;
@@ -55,6 +68,9 @@ public class SecureElement {
     // Interface for exchanging APDU commands
     private short mSEInterface=SIM_ALLIANCE;
 
+    // Number of bytes read with one READ BINARY, 0 if not known yet
+    private int mReadBinaryLen=0;
+
     /**
      * Constructor
      *
@@ -71,9 +87,21 @@ public class SecureElement {
     }
 
     public void setSeInterface(short seInterface){
+        if (seInterface != mSEInterface) {
+            // the supported READ BINARY size depends on the interface
+            mReadBinaryLen = 0;
+        }
         mSEInterface = seInterface;
     }
 
+    public int getReadBinaryLen(){
+        return mReadBinaryLen;
+    }
+
+    public void setReadBinaryLen(int readBinaryLen){
+        mReadBinaryLen = readBinaryLen;
+    }
+
     /**
      * Transmits ADPU commands
      * @param cmd APDU command
@@ -96,6 +124,61 @@ public class SecureElement {
         }
     }
 
+    /**
+     * Transmits several ADPU commands for the same file path.
+     * Over SIM IO all commands are exchanged with one call to the terminal.
+     * @param fileIds File ID of each command
+     * @param cmds APDU commands
+     * @return Data returned by each APDU command
+     */
+    public byte[][] exchangeAPDUs(EF ef, int[] fileIds, byte[][] cmds)
+        throws SecureElementException {
+        return exchangeAPDUs(ef, fileIds, cmds, true);
+    }
+
+    /**
+     * Transmits several ADPU commands for the same file path with one call
+     * to the terminal.
+     * @param fileIds File ID of each command
+     * @param cmds APDU commands
+     * @param fallback <code>true</code> to transmit the commands one by one
+     *             if the terminal cannot exchange them with one call
+     * @return Data returned by each APDU command;
+     *             <code>null</code> if the commands cannot be exchanged with
+     *             one call and fallback is <code>false</code>
+     */
+    public byte[][] exchangeAPDUs(EF ef, int[] fileIds, byte[][] cmds, boolean fallback)
+        throws SecureElementException {
+        if (mSEInterface!=SIM_IO) {
+            if (!fallback) {
+                return null;
+            }
+            byte[][] responses = new byte[cmds.length][];
+            for (int i=0; i<cmds.length; i++) {
+                responses[i] = exchangeAPDU(ef, cmds[i]);
+            }
+            return responses;
+        }
+        List<SimIOCommand> commands = new ArrayList<SimIOCommand>(cmds.length);
+        for (int i=0; i<cmds.length; i++) {
+            commands.add(new SimIOCommand(fileIds[i], ef.getFilePath(), cmds[i]));
+        }
+        try {
+            byte[][] responses = mTerminalHandle.simIOExchangeBatch(commands, fallback);
+            if (responses == null) {
+                return null;
+            }
+            for (byte[] response : responses) {
+                if (response == null || response.length < 2) {
+                    throw new SecureElementException("Invalid response");
+                }
+            }
+            return responses;
+        } catch (Exception e) {
+                throw new SecureElementException("Secure Element access error " + e.getLocalizedMessage());
+        }
+    }
+
     /**
      * Opens a logical channel to ARF Applet or ADF
      * @param AID Applet identifier
@@ -178,4 +261,40 @@ public class SecureElement {
     public void clearAccessRuleCache() {
         this.mArfHandler.getAccessRuleCache().clearCache();
     }
+    public void publishAccessRules() {
+        this.mArfHandler.getAccessRuleCache().publish();
+    }
+
+    /**
+     * Uses the stored access rules if they were read with the current
+     * refresh tag.
+     * @return <code>true</code> if the stored rules are used
+     */
+    public boolean restoreAccessRules() {
+        return mTerminalHandle.getAccessControlEnforcer().restoreAccessRules(getRefreshTag());
+    }
+
+    public void storeAccessRules() {
+        mTerminalHandle.getAccessControlEnforcer().storeAccessRules();
+    }
+
+    /**
+     * Loads the location of the ARF container stored for the current SE.
+     * @return Encoded container location;
+     *             <code>null</code> if not known
+     */
+    public byte[] loadArfContainer() {
+        return AccessRuleStore.getInstance().loadRecord(
+                mTerminalHandle.getName(), ARF_CONTAINER_RECORD, mTerminalHandle.getAtr());
+    }
+
+    /**
+     * Stores the location of the ARF container of the current SE.
+     * @param container Encoded container location;
+     *             <code>null</code> to forget it
+     */
+    public void storeArfContainer(byte[] container) {
+        AccessRuleStore.getInstance().saveRecord(
+                mTerminalHandle.getName(), ARF_CONTAINER_RECORD, mTerminalHandle.getAtr(), container);
+    }
 }
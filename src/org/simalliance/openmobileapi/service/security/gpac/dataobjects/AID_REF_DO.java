@@ -184,6 +184,6 @@ public class AID_REF_DO extends BerTlv {
 
     @Override
     public int hashCode() {
-        return 0;
+        return 31 * getTag() + Arrays.hashCode(mAid);
     }
 }
@@ -259,6 +259,8 @@ public class BerTlv {
 
     @Override
     public int hashCode() {
-        return 0;
+        // equal data objects have the same tag, the value is compared
+        // by the subclasses
+        return mTag;
     }
 }
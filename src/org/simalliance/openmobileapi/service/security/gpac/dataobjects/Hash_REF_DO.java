@@ -168,6 +168,10 @@ public class Hash_REF_DO extends BerTlv {
 
     @Override
     public int hashCode() {
-        return 0;
+        // an empty hash is equal to a missing one
+        if( mHash == null || mHash.length == 0 ){
+            return _TAG;
+        }
+        return 31 * _TAG + Arrays.hashCode(mHash);
     }
 }
@@ -16,7 +16,6 @@
 package org.simalliance.openmobileapi.service.security.gpac.dataobjects;
 
 import java.io.ByteArrayOutputStream;
-import java.util.Arrays;
 
 /**
  * REF-DO:
@@ -168,15 +167,10 @@ public class REF_DO extends BerTlv {
 	
 	@Override
 	public int hashCode () {
-		ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		try {
-			this.build(stream);
-		} catch (DO_Exception e) {
-			return 1;
-		}
-		byte[] data = stream.toByteArray();
-		int hash = Arrays.hashCode(data);
-		//int hash = data.hashCode(); 
+		// consistent with equals() and without serialising the data object
+		int hash = _TAG;
+		hash = 31 * hash + (mAidDo == null ? 0 : mAidDo.hashCode());
+		hash = 31 * hash + (mHashDo == null ? 0 : mHashDo.hashCode());
 		return hash;
 	}
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2026 The Open Mobile API Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package org.simalliance.openmobileapi.service.security.gpac.dataobjects;
+
+/**
+ * Incremental decoder of a Response-ALL-AR-DO.
+ * The response is fed in the chunks returned by GET DATA (All) and
+ * GET DATA (Next), and every REF-AR-DO is handed to the listener as soon
+ * as it is complete. Only the incomplete REF-AR-DO at the end of the data
+ * received so far is buffered.
+ */
+public class Response_ALL_AR_DO_Decoder {
+
+	public interface Listener {
+		/**
+		 * Called when the header of the Response-ALL-AR-DO has been decoded.
+		 * REF-AR-DOs received before, e.g. from an aborted read, are obsolete.
+		 */
+		void onStart();
+
+		/**
+		 * Called for every complete and interpreted REF-AR-DO.
+		 */
+		void onRefArDo(REF_AR_DO ref_ar_do);
+	}
+
+	private final Listener mListener;
+
+	private byte[] mBuffer = new byte[256];
+	private int mCount = 0;
+
+	private boolean mHeaderDecoded = false;
+	// remaining length of the value of the Response-ALL-AR-DO.
+	private int mRemaining = 0;
+
+	public Response_ALL_AR_DO_Decoder(Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * Discards the decoding state to decode a new response.
+	 */
+	public void reset() {
+		mCount = 0;
+		mHeaderDecoded = false;
+		mRemaining = 0;
+	}
+
+	/**
+	 * Decodes the next chunk of the response.
+	 *
+	 * @param data the chunk.
+	 * @throws ParserException if the data is not a valid Response-ALL-AR-DO.
+	 */
+	public void feed(byte[] data) throws ParserException {
+		append(data);
+
+		int pos = 0;
+		int[] header = new int[3];
+		if (!mHeaderDecoded) {
+			if (!decodeHeader(pos, header)) {
+				return;
+			}
+			if (header[0] != Response_ALL_AR_DO._TAG) {
+				throw new ParserException("Invalid DO instead of Response-ALL-AR-DO!");
+			}
+			pos = header[1];
+			mRemaining = header[2];
+			mHeaderDecoded = true;
+			mListener.onStart();
+		}
+
+		while (mRemaining > 0 && decodeHeader(pos, header)) {
+			int end = header[1] + header[2];
+			if (end > mCount) {
+				break; // incomplete, wait for more data
+			}
+			if (end - pos > mRemaining) {
+				throw new ParserException("REF-AR-DO exceeds Response-ALL-AR-DO!");
+			}
+			if (header[0] == REF_AR_DO._TAG) {
+				// the DO gets its own copy since the buffer is reused.
+				byte[] raw = new byte[end - pos];
+				System.arraycopy(mBuffer, pos, raw, 0, raw.length);
+				REF_AR_DO ref_ar_do = new REF_AR_DO(raw, header[1] - pos, header[2]);
+				ref_ar_do.interpret();
+				mListener.onRefArDo(ref_ar_do);
+			}
+			// other DOs are skipped as in Response_ALL_AR_DO.interpret().
+			mRemaining -= end - pos;
+			pos = end;
+		}
+
+		// keep the incomplete data only.
+		System.arraycopy(mBuffer, pos, mBuffer, 0, mCount - pos);
+		mCount -= pos;
+	}
+
+	/**
+	 * Checks that the complete response has been decoded.
+	 *
+	 * @throws ParserException if the response is incomplete.
+	 */
+	public void finish() throws ParserException {
+		if (!mHeaderDecoded || mRemaining > 0) {
+			throw new ParserException("Response-ALL-AR-DO is incomplete!");
+		}
+	}
+
+	private void append(byte[] data) {
+		if (mCount + data.length > mBuffer.length) {
+			byte[] buffer = new byte[Math.max(mBuffer.length * 2, mCount + data.length)];
+			System.arraycopy(mBuffer, 0, buffer, 0, mCount);
+			mBuffer = buffer;
+		}
+		System.arraycopy(data, 0, mBuffer, mCount, data.length);
+		mCount += data.length;
+	}
+
+	/**
+	 * Decodes tag and length like BerTlv.decode() but returns false if the
+	 * header is not complete yet.
+	 *
+	 * @param pos start of the TLV in the buffer.
+	 * @param header receives the tag, the index and the length of the value.
+	 */
+	private boolean decodeHeader(int pos, int[] header) throws ParserException {
+		int index = pos;
+		if (index >= mCount) {
+			return false;
+		}
+		int tag = mBuffer[index++] & 0xff;
+		if (tag == 0xff || tag == 0xdf) { // tag is in two byte format
+			if (index >= mCount) {
+				return false;
+			}
+			tag = (tag << 8) | (mBuffer[index++] & 0xff);
+		}
+
+		if (index >= mCount) {
+			return false;
+		}
+		int length = mBuffer[index++] & 0xff;
+		if (length >= 0x80) {
+			int count = length - 0x80;
+			if (count < 1 || count > 3) {
+				throw new ParserException("Unsupported TLV length encoding!");
+			}
+			if (index + count > mCount) {
+				return false;
+			}
+			length = 0;
+			for (int i = 0; i < count; i++) {
+				length = (length << 8) | (mBuffer[index++] & 0xff);
+			}
+			if (length < (count == 1 ? 0x80 : 1 << (8 * (count - 1)))) {
+				throw new ParserException("Invalid TLV length encoding!");
+			}
+		}
+
+		header[0] = tag;
+		header[1] = index;
+		header[2] = length;
+		return true;
+	}
+}